@@ -0,0 +1,37 @@
+package benchmark;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Takes the same arguments as the JMH main class, but unless
+ * -rf or -rff is given the results are also written as JSON to results/jmh-yyyyMMdd-HHmmss.json,
+ * so runs can be compared later, e.g. with a JMH visualizer.
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams() || cmd.shouldListProfilers()
+				|| cmd.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(cmd);
+		if (!cmd.getResultFormat().hasValue() && !cmd.getResult().hasValue()) {
+			File dir = new File("results");
+			dir.mkdirs();
+			String name = "jmh-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json";
+			options.resultFormat(ResultFormatType.JSON).result(new File(dir, name).getPath());
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,30 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads the recorded responses in the fixtures resource directory.
+ */
+class Fixtures {
+
+	private Fixtures() {
+	}
+
+	/**
+	 * @param name File name in the fixtures directory, files ending with .gz are decompressed.
+	 * @return The content of the file.
+	 * @throws IOException If the fixture is missing.
+	 */
+	static byte[] read(String name) throws IOException {
+		InputStream is = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+		if (is == null)
+			throw new IOException("Missing fixture: " + name);
+		try (InputStream in = name.endsWith(".gz") ? new GZIPInputStream(is) : is) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+}
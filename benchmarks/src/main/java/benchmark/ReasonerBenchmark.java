@@ -0,0 +1,176 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+import createOntology.OntologyGenerator;
+import semanticSearch.ReasonerType;
+import semanticSearch.SemanticSearcher;
+import semanticSearch.SubClassIndex;
+
+/**
+ * Compares the reasoners on the tag ontology and on enlarged versions of it, made of
+ * copies of every class and subclass axiom with renamed IRIs (copies=10 has 10 times as many classes).
+ * The ontology is read from the path parameter, ../GamingOntology_done.owl by default,
+ * so run it from the benchmarks directory or pass -p path=...
+ * With path=generated a hierarchy of 50 * copies tags made by the OntologyGenerator is used instead.
+ * With PRECOMPUTED consistency checking and classification are replaced by loading the
+ * compiled snapshot, which is what SemanticSearcher does at startup.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReasonerBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Ontology {
+		@Param({ "HERMIT", "OPENLLET", "STRUCTURAL", "PRECOMPUTED" })
+		public ReasonerType reasoner;
+
+		@Param({ "1", "10", "100" })
+		public int copies;
+
+		@Param({ "../GamingOntology_done.owl", "generated" })
+		public String path;
+
+		OWLOntology ontology;
+		List<OWLClass> classes;
+		OWLReasoner classified;
+		SubClassIndex index;
+		File snapshot;
+		int next;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+			if ("generated".equals(path)) {
+				File generated = File.createTempFile("generated", ".owl");
+				OntologyGenerator.Generate(50 * copies, 5, 4, SemanticSearcher.ontologyNamespace, generated.getPath());
+				ontology = manager.loadOntologyFromOntologyDocument(generated);
+				generated.delete();
+			} else {
+				ontology = manager.loadOntologyFromOntologyDocument(new File(path));
+				enlarge(ontology, copies);
+			}
+			classes = new ArrayList<>();
+			ontology.classesInSignature().filter(c -> !c.isBuiltIn()).forEach(classes::add);
+
+			if (reasoner == ReasonerType.PRECOMPUTED) {
+				OWLReasoner hermit = ReasonerType.HERMIT.createReasoner(ontology);
+				snapshot = File.createTempFile("ontology", ".idx");
+				SubClassIndex.build(ontology, hermit).save(snapshot);
+				hermit.dispose();
+				index = SubClassIndex.load(snapshot);
+			} else {
+				classified = reasoner.createReasoner(ontology);
+				classified.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			if (classified != null)
+				classified.dispose();
+			if (snapshot != null)
+				snapshot.delete();
+		}
+
+		OWLClass nextClass() {
+			next = (next + 1) % classes.size();
+			return classes.get(next);
+		}
+	}
+
+	/**
+	 * Adds copies - 1 renamed copies of every class declaration and subclass axiom between named classes.
+	 */
+	static void enlarge(OWLOntology ontology, int copies) {
+		OWLDataFactory fac = ontology.getOWLOntologyManager().getOWLDataFactory();
+		List<OWLClass> classes = new ArrayList<>();
+		ontology.classesInSignature().filter(c -> !c.isBuiltIn()).forEach(classes::add);
+		List<OWLSubClassOfAxiom> subClassAxioms = new ArrayList<>();
+		ontology.axioms(AxiomType.SUBCLASS_OF)
+				.filter(a -> !a.getSubClass().isAnonymous() && !a.getSuperClass().isAnonymous())
+				.forEach(subClassAxioms::add);
+
+		List<OWLAxiom> axioms = new ArrayList<>();
+		for (int copy = 1; copy < copies; copy++) {
+			for (OWLClass cls : classes)
+				axioms.add(fac.getOWLDeclarationAxiom(rename(fac, cls, copy)));
+			for (OWLSubClassOfAxiom axiom : subClassAxioms)
+				axioms.add(fac.getOWLSubClassOfAxiom(rename(fac, axiom.getSubClass().asOWLClass(), copy),
+						rename(fac, axiom.getSuperClass().asOWLClass(), copy)));
+		}
+		ontology.getOWLOntologyManager().addAxioms(ontology, axioms.stream());
+	}
+
+	private static OWLClass rename(OWLDataFactory fac, OWLClass cls, int copy) {
+		return cls.isBuiltIn() ? cls : fac.getOWLClass(IRI.create(cls.getIRI().toString() + "_" + copy));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Object isConsistent(Ontology o) throws Exception {
+		if (o.reasoner == ReasonerType.PRECOMPUTED)
+			return SubClassIndex.load(o.snapshot);
+		OWLReasoner reasoner = o.reasoner.createReasoner(o.ontology);
+		try {
+			return reasoner.isConsistent();
+		} finally {
+			reasoner.dispose();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public SubClassIndex classify(Ontology o) throws Exception {
+		if (o.reasoner == ReasonerType.PRECOMPUTED)
+			return SubClassIndex.load(o.snapshot);
+		OWLReasoner reasoner = o.reasoner.createReasoner(o.ontology);
+		try {
+			reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+			return SubClassIndex.build(o.ontology, reasoner);
+		} finally {
+			reasoner.dispose();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long getSubClasses(Ontology o) {
+		OWLClass cls = o.nextClass();
+		if (o.reasoner == ReasonerType.PRECOMPUTED)
+			return o.index.getSubClasses(cls.getIRI().toString(), false).size();
+		return o.classified.getSubClasses(cls, false).entities().count();
+	}
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.rdf4j.repository.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import createOntology.OntologyGenerator;
+import databaseControl.CatalogGenerator;
+import databaseControl.DatabaseManager;
+import databaseControl.GameTriple;
+import databaseControl.LoadStatistics;
+import databaseControl.StoreBackend;
+
+/**
+ * Measures how long SaveToDatabase takes to load a fixed number of triples of generated games
+ * into a local store, for different batch sizes. No rdf4j server is needed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SaveToDatabaseBenchmark {
+
+	@Param({ "memory", "native" })
+	public String store;
+
+	@Param({ "100", "1000", "10000" })
+	public int batchSize;
+
+	@Param({ "100000" })
+	public int triples;
+
+	private List<GameTriple> data;
+	private File dataDir;
+	private Repository repo;
+	private DatabaseManager manager;
+
+	@Setup(Level.Trial)
+	public void createData() {
+		CatalogGenerator generator = new CatalogGenerator(OntologyGenerator.tagNames(339), triples);
+		data = new ArrayList<>(triples + 32);
+		for (int appid = 0; data.size() < triples; appid++)
+			data.addAll(generator.nextGame(appid));
+		data.subList(triples, data.size()).clear();
+	}
+
+	@Setup(Level.Iteration)
+	public void createStore() throws Exception {
+		StoreBackend backend = StoreBackend.valueOf(store.toUpperCase());
+		dataDir = backend == StoreBackend.NATIVE ? Files.createTempDirectory("native-store").toFile() : null;
+		repo = DatabaseManager.createRepository(backend, dataDir, false);
+		manager = new DatabaseManager(repo);
+		DatabaseManager.BatchSize = batchSize;
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteStore() throws Exception {
+		repo.shutDown();
+		if (dataDir != null)
+			FileUtils.deleteDirectory(dataDir);
+	}
+
+	@Benchmark
+	public LoadStatistics saveToDatabase() {
+		return manager.SaveToDatabase(data);
+	}
+}
@@ -0,0 +1,129 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import createOntology.OntologyGenerator;
+import databaseControl.CatalogGenerator;
+import databaseControl.DatabaseManager;
+import databaseControl.GameFilter;
+import databaseControl.GameResult;
+import databaseControl.StoreBackend;
+import semanticSearch.ResultPage;
+import semanticSearch.SemanticSearcher;
+
+/**
+ * Measures the search paths on an embedded memory store seeded with games made by the
+ * CatalogGenerator, tagged with the classes of one of the bundled ontologies, or of a hierarchy
+ * of generatedTags tags made by the OntologyGenerator (ontology=generated). The searched tag is the class
+ * of the ontology with the most descendants, so the expanded searches do the most work.
+ * The result caches are cleared before every search, so each one reaches the store
+ * (searchForTag, Search) or the tag index (SearchQuery, SearchRanked).
+ * searchRankedFiltered adds a metaScore, category and type filter to searchRanked.
+ * The ontologies are read from the parent directory, run it from the benchmarks directory.
+ * Seeding 1000000 games needs a few GB of heap, use -p games=10000 for a quick run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SearchBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	public int games;
+
+	@Param({ "../GamingOntology_done.owl", "../GamingOntology1.owl", "generated" })
+	public String ontology;
+
+	@Param({ "3390" })
+	public int generatedTags;
+
+	private File generatedOntology;
+	private DatabaseManager manager;
+	private SemanticSearcher searcher;
+	private String tag;
+	private final GameFilter filter = new GameFilter().setMinMetaScore(81).addCategory("Co-op").setType("game");
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		SemanticSearcher.ontologyPath = ontology;
+		if ("generated".equals(ontology)) {
+			generatedOntology = File.createTempFile("generated", ".owl");
+			OntologyGenerator.Generate(generatedTags, 20, 4, SemanticSearcher.ontologyNamespace, generatedOntology.getPath());
+			SemanticSearcher.ontologyPath = generatedOntology.getPath();
+		}
+		manager = new DatabaseManager(DatabaseManager.createRepository(StoreBackend.MEMORY, null, false));
+		searcher = new SemanticSearcher(manager);
+
+		List<String> tags = new ArrayList<>();
+		int mostDescendants = -1;
+		for (String name : searcher.getClassNames()) {
+			tags.add(name);
+			int descendants = searcher.getSubClasses(name, false).size();
+			if (descendants > mostDescendants) {
+				mostDescendants = descendants;
+				tag = name;
+			}
+		}
+		new CatalogGenerator(tags, games).SaveToDatabase(manager, games);
+		manager.getTagIndex();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		manager.close();
+		if (generatedOntology != null)
+			generatedOntology.delete();
+	}
+
+	private void clearResultCaches() {
+		manager.getTagCache().invalidateAll();
+		manager.getTagSetCache().invalidateAll();
+	}
+
+	@Benchmark
+	public List<GameResult> searchForTag() {
+		clearResultCaches();
+		return manager.searchForTag(tag);
+	}
+
+	@Benchmark
+	public Set<GameResult> search() {
+		clearResultCaches();
+		return searcher.Search(tag);
+	}
+
+	@Benchmark
+	public Set<GameResult> searchQuery() {
+		return searcher.SearchQuery(tag, true);
+	}
+
+	@Benchmark
+	public ResultPage searchRanked() {
+		return searcher.SearchRanked('"' + tag + '"', true, 0, 50, null);
+	}
+
+	@Benchmark
+	public ResultPage searchRankedFiltered() {
+		return searcher.SearchRanked('"' + tag + '"', true, filter, 0, 50, null);
+	}
+}
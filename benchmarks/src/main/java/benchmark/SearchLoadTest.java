@@ -0,0 +1,72 @@
+package benchmark;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for the search server started with the 'serve' program argument.
+ * Sends the given number of requests from the given number of threads, cycling
+ * through the tags, then prints the throughput and latency percentiles.
+ * 
+ * Usage: java -cp target/benchmarks.jar benchmark.SearchLoadTest
+ *        [baseUrl=http://localhost:8081] [threads=32] [requests=2000] [tags=Action,Horror,Multiplayer]
+ */
+public class SearchLoadTest {
+
+	public static void main(String[] args) throws Exception {
+		String baseUrl = args.length > 0 ? args[0] : "http://localhost:8081";
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		int requests = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+		String[] tags = (args.length > 3 ? args[3] : "Action,Horror,Multiplayer").split(",");
+
+		long[] latencies = new long[requests];
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger errors = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			pool.execute(() -> {
+				byte[] buffer = new byte[8192];
+				int i;
+				while ((i = next.getAndIncrement()) < requests) {
+					long begin = System.nanoTime();
+					try {
+						URL url = new URL(baseUrl + "/search?tag=" + URLEncoder.encode(tags[i % tags.length], "UTF-8"));
+						HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+						if (conn.getResponseCode() != 200)
+							errors.incrementAndGet();
+						try (InputStream is = conn.getResponseCode() < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+							while (is != null && is.read(buffer) >= 0) {
+							}
+						}
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+					latencies[i] = System.nanoTime() - begin;
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.HOURS);
+		long elapsed = System.nanoTime() - start;
+
+		Arrays.sort(latencies);
+		System.out.printf("requests: %d, threads: %d, errors: %d%n", requests, threads, errors.get());
+		System.out.printf("throughput: %.1f requests/sec%n", requests * 1e9 / elapsed);
+		System.out.printf("latency ms: p50 %.2f, p95 %.2f, p99 %.2f, max %.2f%n", percentile(latencies, 0.50),
+				percentile(latencies, 0.95), percentile(latencies, 0.99), latencies[requests - 1] / 1e6);
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+}
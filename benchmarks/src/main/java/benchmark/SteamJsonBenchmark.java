@@ -0,0 +1,82 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import databaseControl.GameTriple;
+import databaseControl.SteamJsonParser;
+
+/**
+ * Compares the streaming SteamJsonParser with parsing the whole response
+ * into a Gson tree, on responses recorded in the fixtures directory.
+ * Run with -prof gc to see the difference in allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SteamJsonBenchmark {
+
+	private byte[] appList;
+	private byte[] gameDetails;
+
+	@Setup(Level.Trial)
+	public void readFixtures() throws IOException {
+		appList = Fixtures.read("applist.json.gz");
+		gameDetails = Fixtures.read("appdetails_570.json");
+	}
+
+	@Benchmark
+	public int[] appidsStreaming() throws IOException {
+		return SteamJsonParser.parseAppids(reader(appList));
+	}
+
+	@Benchmark
+	public List<Integer> appidsTree() {
+		JsonArray apps = new JsonParser().parse(reader(appList)).getAsJsonObject()
+				.get("applist").getAsJsonObject().get("apps").getAsJsonObject().get("app").getAsJsonArray();
+		List<Integer> result = new ArrayList<>();
+		for (int i = 0; i < apps.size(); i++)
+			result.add(apps.get(i).getAsJsonObject().get("appid").getAsInt());
+		return result;
+	}
+
+	@Benchmark
+	public List<GameTriple> gameDataStreaming() throws IOException {
+		return SteamJsonParser.parseGameData(reader(gameDetails), 570);
+	}
+
+	@Benchmark
+	public JsonObject gameDataTree() {
+		return new JsonParser().parse(reader(gameDetails)).getAsJsonObject()
+				.get("570").getAsJsonObject().get("data").getAsJsonObject();
+	}
+
+	private static Reader reader(byte[] data) {
+		return new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8);
+	}
+}
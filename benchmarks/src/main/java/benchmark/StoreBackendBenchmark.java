@@ -0,0 +1,145 @@
+package benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import databaseControl.CatalogGenerator;
+import databaseControl.DatabaseManager;
+import databaseControl.GameResult;
+import databaseControl.GameTriple;
+import databaseControl.LoadStatistics;
+import databaseControl.StoreBackend;
+
+/**
+ * Compares ingest and query latency of the repository backends of DatabaseManager.
+ * The embedded stores are created empty in a temporary directory. The http backend needs an rdf4j
+ * server on localhost:8080 with a scratch repository, whose id is given in the benchmark.http.repository
+ * system property, e.g. java -Dbenchmark.http.repository=benchmark-scratch -jar target/benchmarks.jar StoreBackend.
+ * The scratch repository is cleared before and after every run. Without the property, or with the
+ * repository of the crawled data, the http runs fail in their setup and JMH goes on with the other backends.
+ * The http backend has no lucene variant.
+ */
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class StoreBackendBenchmark {
+
+	private static final String[] tags = { "Action", "Adventure", "Indie", "Horror", "RPG", "Strategy",
+			"Multiplayer", "Co-op", "Shooter", "Puzzle" };
+
+	/**
+	 * Id of the scratch repository the http backend is benchmarked on, null to skip it.
+	 */
+	static final String HttpRepository = System.getProperty("benchmark.http.repository");
+
+	static List<GameTriple> createGames(int games) {
+		return new CatalogGenerator(Arrays.asList(tags), games).generate(games);
+	}
+
+	@State(Scope.Thread)
+	public abstract static class Store {
+		@Param({ "MEMORY", "NATIVE", "HTTP" })
+		public StoreBackend backend;
+
+		@Param({ "false", "true" })
+		public boolean lucene;
+
+		@Param({ "20000" })
+		public int games;
+
+		List<GameTriple> data;
+		File dataDir;
+		DatabaseManager manager;
+
+		void open() throws Exception {
+			if (backend == StoreBackend.HTTP) {
+				if (HttpRepository == null || HttpRepository.trim().isEmpty())
+					throw new IllegalStateException("Skipped, set -Dbenchmark.http.repository to a scratch repository id");
+				if (HttpRepository.trim().equals("steamgames"))
+					throw new IllegalStateException("Skipped, steamgames holds the crawled data, use a scratch repository");
+				if (lucene)
+					throw new IllegalStateException("Skipped, the http backend has no lucene variant");
+				manager = new DatabaseManager(DatabaseManager.createHttpRepository(HttpRepository.trim()));
+				manager.ResetDatabase();
+				return;
+			}
+			dataDir = backend == StoreBackend.MEMORY ? null : Files.createTempDirectory("store-benchmark").toFile();
+			manager = new DatabaseManager(DatabaseManager.createRepository(backend, dataDir, lucene));
+		}
+
+		void close() throws Exception {
+			if (manager == null)
+				return;
+			if (backend == StoreBackend.HTTP)
+				manager.ResetDatabase();
+			manager.close();
+			if (dataDir != null)
+				FileUtils.deleteDirectory(dataDir);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class EmptyStore extends Store {
+		@Setup(Level.Trial)
+		public void createData() {
+			data = createGames(games);
+		}
+
+		@Setup(Level.Iteration)
+		public void setUp() throws Exception {
+			open();
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown() throws Exception {
+			close();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class FilledStore extends Store {
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			open();
+			manager.SaveToDatabase(createGames(games));
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			close();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public LoadStatistics ingest(EmptyStore store) {
+		return store.manager.SaveToDatabase(store.data);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<GameResult> searchForTag(FilledStore store) {
+		store.manager.invalidateCaches();
+		return store.manager.searchForTag("Horror");
+	}
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import databaseControl.StoreTagExtractor;
+
+/**
+ * Compares StoreTagExtractor with unescaping and concatenating the whole store page
+ * and running a regex over it, on a store page recorded in the fixtures directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreTagBenchmark {
+
+	private static final String wholePageRegex = "<a href=\"https:\\/\\/store\\.steampowered\\.com\\/tags\\/.+?\" class=\"app_tag\" (style=\".+?\")?>(.+?)(\\t)+?<\\/a>";
+
+	private byte[] page;
+
+	@Setup(Level.Trial)
+	public void readFixture() throws IOException {
+		page = Fixtures.read("storepage_570.html.gz");
+	}
+
+	@Benchmark
+	public List<String> extractor() throws IOException {
+		return StoreTagExtractor.extract(reader(page));
+	}
+
+	@Benchmark
+	public List<String> wholePage() throws IOException {
+		Pattern pattern = Pattern.compile(wholePageRegex);
+		BufferedReader br = new BufferedReader(reader(page));
+		StringBuilder sb = new StringBuilder();
+		String line;
+		while ((line = br.readLine()) != null)
+			sb.append(StringEscapeUtils.unescapeHtml4(line).trim());
+		List<String> result = new ArrayList<>();
+		Matcher matcher = pattern.matcher(sb);
+		while (matcher.find())
+			result.add(matcher.group(2));
+		return result;
+	}
+
+	private static Reader reader(byte[] data) {
+		return new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8);
+	}
+}
@@ -1,50 +1,91 @@
 package createOntology;
 
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.formats.PrefixDocumentFormat;
-import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDocumentFormat;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
 import org.semanticweb.owlapi.model.PrefixManager;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
-import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import openllet.core.OpenlletOptions;
-import openllet.owlapi.OpenlletReasonerFactory;
+import semanticSearch.ReasonerType;
 
 public class OntologyClassCreator {
+	private static final Logger logger = LoggerFactory.getLogger(OntologyClassCreator.class);
 	
 	public static final String namespace = "http://hu.komplexmi.e5q6ui#";
 	
+	/**
+	 * CreateClasses creates the axioms on several threads above this number of tags.
+	 * Default value is 10000.
+	 */
+	public static int ParallelThreshold = 10000;
+	/**
+	 * The reasoner returned by getReasoner. Default value is OPENLLET.
+	 */
+	public static ReasonerType Reasoner = ReasonerType.OPENLLET;
+	
 	final OWLOntologyManager manager;
 	final OWLOntology onto;
 	final PrefixManager pm;
-	final OWLReasoner reasoner;
 	final OWLDataFactory fac;
+	private OWLReasoner reasoner;
 	
 	/**
 	 *  Standard constructor for the class.
 	 *  Initializes and sets up the private ontology manager, 
-	 *  the ontology used, the reasoner and the object factory.
+	 *  the ontology used and the object factory.
+	 *  The reasoner is only created when getReasoner is first called.
 	 */
 	public OntologyClassCreator() throws Exception {
+		this(namespace);
+	}
+	
+	/**
+	 *  Same as the standard constructor, but the created entities use the given namespace.
+	 *  
+	 *  @param  entityNamespace  The namespace of the classes, e.g. http://hu.komplexmi.e5q6ui#
+	 */
+	public OntologyClassCreator(String entityNamespace) throws Exception {
 		manager = OWLManager.createOWLOntologyManager();
 		fac = manager.getOWLDataFactory();
 		onto = manager.createOntology();
 		manager.getOntologyFormat(onto);
 		pm = (PrefixDocumentFormat)manager.getOntologyFormat(onto);
-		pm.setDefaultPrefix(namespace);
-		System.out.println("Ontolgia betltve: " + manager.getOntologyDocumentIRI(onto));
-
-		OpenlletOptions.USE_UNIQUE_NAME_ASSUMPTION = true;
-		OWLReasonerFactory reasonerFactory = new OpenlletReasonerFactory();
-		reasoner = reasonerFactory.createReasoner(onto);
+		pm.setDefaultPrefix(entityNamespace);
+		logger.info("Ontolgia betltve: {}", manager.getOntologyDocumentIRI(onto));
+	}
+	
+	/**
+	 * Returns the reasoner of the ontology, created the first time this is called.
+	 * 
+	 * @return The reasoner.
+	 * @throws IllegalStateException If Reasoner is PRECOMPUTED.
+	 */
+	public synchronized OWLReasoner getReasoner() {
+		if (reasoner == null) {
+			if (Reasoner == ReasonerType.OPENLLET)
+				OpenlletOptions.USE_UNIQUE_NAME_ASSUMPTION = true;
+			reasoner = Reasoner.createReasoner(onto);
+		}
+		return reasoner;
 	}
 	
 	private OWLClass cls(String name) {
@@ -53,59 +94,68 @@ public class OntologyClassCreator {
 	
 	/**
 	 * Creates an owl class for every element in the given list.
-	 * Every created entity uses the namespace http://hu.komplexmi.e5q6ui#
+	 * Every created entity uses the namespace http://hu.komplexmi.e5q6ui# unless another one was given.
+	 * The declaration axioms are created first, on several threads for more than
+	 * ParallelThreshold tags, then added to the ontology with a single change.
+	 * Duplicate tags are only declared once.
 	 *
 	 * @param  tags  A String list containing all the tags.
 	 */
 	public void CreateClasses(List<String> tags) {
-		for(String tag : tags) {
-			OWLClass tagClass = cls(tag);
-			System.out.println("Creating class: " + tagClass.getIRI());
-			OWLAxiom declaration = fac.getOWLDeclarationAxiom(tagClass);
-			manager.addAxiom(onto, declaration);
-		}
+		long start = System.nanoTime();
+		Set<String> distinct = new LinkedHashSet<>(tags);
+		Stream<String> stream = distinct.size() > ParallelThreshold ? distinct.parallelStream() : distinct.stream();
+		List<OWLAxiom> declarations = stream
+				.map(tag -> (OWLAxiom) fac.getOWLDeclarationAxiom(cls(tag)))
+				.collect(Collectors.toList());
+		manager.addAxioms(onto, declarations.stream());
+		logger.info("Created {} classes in {} ms", declarations.size(), (System.nanoTime() - start) / 1000000);
 	}
 	
 	
 	/**
-	 * Saves the ontology in an RDF Xml format to the filepath given.
+	 * Makes each key of the map a subclass of its value, e.g. Gore of Horror.
+	 * The classes should be created with CreateClasses first. The axioms are added with a single change.
+	 *
+	 * @param  parents  The parent tag of every tag that has one.
+	 */
+	public void CreateSubClasses(Map<String, String> parents) {
+		long start = System.nanoTime();
+		List<OWLAxiom> axioms = new ArrayList<>(parents.size());
+		for (Map.Entry<String, String> entry : parents.entrySet())
+			axioms.add(fac.getOWLSubClassOfAxiom(cls(entry.getKey()), cls(entry.getValue())));
+		manager.addAxioms(onto, axioms.stream());
+		logger.info("Created {} subclass axioms in {} ms", axioms.size(), (System.nanoTime() - start) / 1000000);
+	}
+	
+	/**
+	 * Saves the ontology to the filepath given, in the format matching its extension:
+	 * .owl RDF/XML, .ofn functional syntax, .owx OWL/XML, .ttl Turtle.
 	 * .owl extension advised.
 	 *
 	 * @param  filePath  The filepath where the new ontology file should be created.
+	 * @see OntologyFormat
 	 */
 	public void SaveOntology(String filePath) {
-		try {
-			manager.saveOntology(onto, new RDFXMLDocumentFormat(), new FileOutputStream(filePath));
+		SaveOntology(filePath, OntologyFormat.fromPath(filePath));
+	}
+	
+	/**
+	 * Saves the ontology in the given format to the filepath given.
+	 *
+	 * @param  filePath  The filepath where the new ontology file should be created.
+	 * @param  format  The format of the file.
+	 */
+	public void SaveOntology(String filePath, OntologyFormat format) {
+		long start = System.nanoTime();
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(filePath))) {
+			OWLDocumentFormat documentFormat = format.createDocumentFormat();
+			if (documentFormat instanceof PrefixDocumentFormat)
+				((PrefixDocumentFormat) documentFormat).copyPrefixesFrom(pm);
+			manager.saveOntology(onto, documentFormat, os);
+			logger.info("Saved ontology as {} in {} ms: {}", format, (System.nanoTime() - start) / 1000000, filePath);
 		}catch (Exception e) {
-			e.printStackTrace();
+			logger.error("Saving the ontology failed: " + filePath, e);
 		}
 	}
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
@@ -0,0 +1,67 @@
+package createOntology;
+
+import org.semanticweb.owlapi.formats.FunctionalSyntaxDocumentFormat;
+import org.semanticweb.owlapi.formats.OWLXMLDocumentFormat;
+import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
+import org.semanticweb.owlapi.formats.TurtleDocumentFormat;
+import org.semanticweb.owlapi.model.OWLDocumentFormat;
+
+/**
+ * The formats an ontology can be saved in by OntologyClassCreator.
+ * Every format can be loaded back by the SemanticSearcher.
+ */
+public enum OntologyFormat {
+	/**
+	 * RDF/XML, the format of the ontologies in the repository. Extensions: .owl, .rdf
+	 */
+	RDF_XML(".owl"),
+	/**
+	 * OWL functional syntax, the most compact text format. Extension: .ofn
+	 */
+	FUNCTIONAL(".ofn"),
+	/**
+	 * OWL/XML. Extension: .owx
+	 */
+	OWL_XML(".owx"),
+	/**
+	 * Turtle. Extension: .ttl
+	 */
+	TURTLE(".ttl");
+
+	private final String extension;
+
+	private OntologyFormat(String extension) {
+		this.extension = extension;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * @return A new OWLAPI document format object of this format.
+	 */
+	public OWLDocumentFormat createDocumentFormat() {
+		switch (this) {
+			case FUNCTIONAL: return new FunctionalSyntaxDocumentFormat();
+			case OWL_XML: return new OWLXMLDocumentFormat();
+			case TURTLE: return new TurtleDocumentFormat();
+			default: return new RDFXMLDocumentFormat();
+		}
+	}
+
+	/**
+	 * Chooses the format by the extension of a file path, RDF_XML for unknown extensions.
+	 * 
+	 * @param filePath The path the ontology is saved to.
+	 * @return The format matching the extension.
+	 */
+	public static OntologyFormat fromPath(String filePath) {
+		String path = filePath.toLowerCase();
+		for (OntologyFormat format : values()) {
+			if (path.endsWith(format.extension))
+				return format;
+		}
+		return RDF_XML;
+	}
+}
@@ -0,0 +1,68 @@
+package createOntology;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates synthetic tag hierarchies for testing reasoning and expanded searches
+ * at sizes the real tag list does not have. The tags are named Tag_0, Tag_1 ... and
+ * the first roots tags are the roots of the hierarchy. Every further tag is the subclass
+ * of an earlier one, each tag having at most branching direct subclasses, filled level by level:
+ * a small branching gives deep hierarchies, a large one wide hierarchies.
+ * Earlier tags are closer to the roots, so used with CatalogGenerator the general tags are the popular ones.
+ */
+public class OntologyGenerator {
+
+	private OntologyGenerator() {
+	}
+
+	/**
+	 * @param tags Number of tags.
+	 * @return The names of the tags, Tag_0 first.
+	 */
+	public static List<String> tagNames(int tags) {
+		List<String> result = new ArrayList<>(tags);
+		for (int i = 0; i < tags; i++)
+			result.add("Tag_" + i);
+		return result;
+	}
+
+	/**
+	 * @param tags The tags of the hierarchy, in the order they are placed in it.
+	 * @param roots Number of tags without a parent, at least 1.
+	 * @param branching Max number of direct subclasses of a tag, at least 1.
+	 * @return The parent of every tag that is not a root.
+	 */
+	public static Map<String, String> hierarchy(List<String> tags, int roots, int branching) {
+		if (roots < 1 || branching < 1)
+			throw new IllegalArgumentException("roots and branching must be at least 1");
+		Map<String, String> parents = new LinkedHashMap<>();
+		for (int i = roots; i < tags.size(); i++)
+			parents.put(tags.get(i), tags.get((i - roots) / branching));
+		return parents;
+	}
+
+	/**
+	 * Generates a hierarchy of the given shape with an OntologyClassCreator and saves it,
+	 * in the format chosen by the extension of filePath.
+	 * 
+	 * @param tags Number of tags.
+	 * @param roots Number of tags without a parent.
+	 * @param branching Max number of direct subclasses of a tag.
+	 * @param namespace The namespace of the classes, SemanticSearcher.ontologyNamespace for ontologies to search with.
+	 * @param filePath The file to save the ontology to.
+	 * @return The names of the tags, Tag_0 first.
+	 * @throws Exception If the ontology cannot be created.
+	 */
+	public static List<String> Generate(int tags, int roots, int branching, String namespace, String filePath)
+			throws Exception {
+		List<String> names = tagNames(tags);
+		OntologyClassCreator creator = new OntologyClassCreator(namespace);
+		creator.CreateClasses(names);
+		creator.CreateSubClasses(hierarchy(names, roots, branching));
+		creator.SaveOntology(filePath);
+		return names;
+	}
+}
@@ -6,18 +6,26 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.*;
+import java.nio.charset.StandardCharsets;
+
+import webFetch.HttpFetcher;
+import webFetch.RequestThrottle;
 
 public class TagDownloader {
+	private static final Logger logger = LoggerFactory.getLogger(TagDownloader.class);
 	private static final String URL = "https://store.steampowered.com/tag/browse#global_492";
-	private static final String tagExtractRegex = "^\\s*<div class=\"tag_browse_tag( active)?\" data-tagid=\"[0-9]+\">(.*?)<\\/div>$";
+	private static final Pattern tagPattern = Pattern.compile("^\\s*<div class=\"tag_browse_tag( active)?\" data-tagid=\"[0-9]+\">(.*?)<\\/div>$");
+	private static final String tagMarker = "tag_browse_tag";
 	
 	private static final String tagsCsvPath = "tags.csv";
 	
@@ -25,37 +33,42 @@ public class TagDownloader {
 	/**
 	 * Returns a String list containing all the tags present on the steam tags page.
 	 * <a href='https://store.steampowered.com/tag/browse#global_492'>https://store.steampowered.com/tag/browse#global_492</a>
-	 * The method uses the fixed regexp expression to extract all the tags from the raw html source of the webpage.
+	 * The method uses the fixed regexp expression to extract all the tags from the raw html source of the webpage,
+	 * only the lines containing a tag are matched and only the tag names are unescaped.
 	 *
 	 * @return      a String list containing the tags
 	 */
 	public static List<String> getTagsFromSteamPage(){
 		List<String> result = new ArrayList<String>();
-		Pattern pattern = Pattern.compile(tagExtractRegex);
 		
-		try {
-			URL url = new URL(URL);
-			InputStream is = url.openStream();
-			BufferedReader br = new BufferedReader(new InputStreamReader(is));
-			
-			String line = null;
-			while ((line = br.readLine()) != null) {
-				line = StringEscapeUtils.unescapeHtml4(line);
-	            System.out.println(line);
-	            Matcher matcher = pattern.matcher(line);
-	            if(matcher.find()) {
-	            	System.out.println("Found tag: " + matcher.group(2));
-	            	result.add(matcher.group(2).replaceAll(" ", "_"));
-	            }
-	        }
+		try (HttpFetcher fetcher = new HttpFetcher(new RequestThrottle(0, 1), 1)) {
+			result = fetcher.fetch("tagbrowse", URL, TagDownloader::readTags);
+			logger.info("Found tags: {}", result.size());
 			
 		}catch (Exception e) {
-			e.printStackTrace();
+			logger.error("Downloading the tags failed", e);
 		}
 		
 		return result;
 	}
 	
+	private static List<String> readTags(InputStream is) throws IOException {
+		List<String> result = new ArrayList<String>();
+		BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+		
+		String line = null;
+		while ((line = br.readLine()) != null) {
+			if (line.indexOf(tagMarker) < 0)
+				continue;
+            Matcher matcher = tagPattern.matcher(line);
+            if(matcher.find()) {
+            	String tag = StringEscapeUtils.unescapeHtml4(matcher.group(2));
+            	result.add(tag.replace(' ', '_'));
+            }
+        }
+		return result;
+	}
+	
 	/**
 	 * Returns a String list from the top 50 tags present in the provided tags.csv file.
 	 * Should only be used to create a prototype, normally use getTagsFromSteamPage()
@@ -80,7 +93,7 @@ public class TagDownloader {
 			}
 			
 		} catch (Exception e) {
-			e.printStackTrace();
+			logger.error("Reading " + tagsCsvPath + " failed", e);
 		}
 		
 		return result;
@@ -0,0 +1,190 @@
+package databaseControl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFWriter;
+import org.eclipse.rdf4j.rio.Rio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates synthetic games shaped like the ones GameDownloader downloads, for testing
+ * at sizes Steam does not have. Tags and categories are drawn from a Zipf distribution,
+ * so the first tags of the list are the most popular ones, and about a third of the games
+ * has a metacritic score, normally distributed around 72.
+ * The same seed always generates the same games.
+ */
+public class CatalogGenerator {
+
+	private static final Logger logger = LoggerFactory.getLogger(CatalogGenerator.class);
+
+	/**
+	 * The categories of the generated games, most common first.
+	 */
+	public static final String[] categories = { "Single-player", "Steam Achievements", "Steam Trading Cards",
+			"Steam Cloud", "Full controller support", "Multi-player", "Partial Controller Support", "Online Multi-Player",
+			"Steam Leaderboards", "Co-op", "Online Co-op", "Shared/Split Screen", "Local Multi-Player", "Stats",
+			"Local Co-op", "In-App Purchases", "Cross-Platform Multiplayer", "Steam Workshop", "Includes level editor",
+			"Captions available", "VR Support", "Remote Play on TV", "MMO", "Commentary available",
+			"Valve Anti-Cheat enabled", "Steam Turn Notifications", "SteamVR Collectibles", "Includes Source SDK" };
+
+	/**
+	 * Skew of the tag and category popularity, see ZipfDistribution. Default value is 1.0.
+	 */
+	public static double ZipfExponent = 1.0;
+	/**
+	 * Min and max number of tags of a game. Default values are 3 and 20, Steam shows at most 20.
+	 */
+	public static int MinTags = 3, MaxTags = 20;
+	/**
+	 * Share of the generated apps that are games, the rest are DLCs, which have no tags
+	 * like the DLCs downloaded from Steam. Default value is 0.9.
+	 */
+	public static double GameRatio = 0.9;
+	/**
+	 * Share of the games with a metacritic score. Default value is 0.3.
+	 */
+	public static double MetaScoreRatio = 0.3;
+
+	private final List<String> tags;
+	private final ZipfDistribution tagDistribution;
+	private final ZipfDistribution categoryDistribution;
+	private final Random random;
+
+	/**
+	 * @param tags The tags of the games, most popular first.
+	 * @param seed Seed of the random generator.
+	 */
+	public CatalogGenerator(List<String> tags, long seed) {
+		if (tags.isEmpty())
+			throw new IllegalArgumentException("No tags to generate games with");
+		this.tags = new ArrayList<>(tags);
+		tagDistribution = new ZipfDistribution(tags.size(), ZipfExponent);
+		categoryDistribution = new ZipfDistribution(categories.length, ZipfExponent);
+		random = new Random(seed);
+	}
+
+	/**
+	 * Generates the triples of one app: title, type, categories,
+	 * and for games tags and maybe a metacritic score.
+	 * 
+	 * @param appid The appid of the app.
+	 * @return The triples of the app.
+	 */
+	public List<GameTriple> nextGame(int appid) {
+		List<GameTriple> result = new ArrayList<>();
+		boolean game = random.nextDouble() < GameRatio;
+		result.add(new GameTriple(appid, GameProperty.TITLE, (game ? "Game " : "DLC ") + appid));
+		result.add(new GameTriple(appid, GameProperty.TYPE, game ? "game" : "dlc"));
+		for (int category : distinct(categoryDistribution, 1 + random.nextInt(6)))
+			result.add(new GameTriple(appid, GameProperty.CATEGORY, categories[category]));
+		if (!game)
+			return result;
+
+		if (random.nextDouble() < MetaScoreRatio) {
+			long score = Math.round(72 + 10 * random.nextGaussian());
+			result.add(new GameTriple(appid, GameProperty.META_SCORE, Long.toString(Math.max(20, Math.min(100, score)))));
+		}
+		int tagCount = MinTags + random.nextInt(Math.max(1, MaxTags - MinTags + 1));
+		for (int tag : distinct(tagDistribution, tagCount))
+			result.add(new GameTriple(appid, GameProperty.TAG, tags.get(tag)));
+		return result;
+	}
+
+	/**
+	 * Generates games with consecutive appids and passes them to the sink one at a time.
+	 * 
+	 * @param firstAppid The appid of the first game.
+	 * @param games Number of games to generate.
+	 * @param sink Receives the triples of each game.
+	 */
+	public void generate(int firstAppid, int games, Consumer<List<GameTriple>> sink) {
+		for (int appid = firstAppid; appid < firstAppid + games; appid++)
+			sink.accept(nextGame(appid));
+	}
+
+	/**
+	 * Generates games with the appids 0 to games - 1 into a list.
+	 * 
+	 * @param games Number of games to generate.
+	 * @return The triples of every game.
+	 */
+	public List<GameTriple> generate(int games) {
+		List<GameTriple> result = new ArrayList<>(games * 12);
+		generate(0, games, result::addAll);
+		return result;
+	}
+
+	/**
+	 * Generates games with the appids 0 to games - 1 straight into the database,
+	 * in SaveToDatabase calls of about GameDataPipeline.BatchSize triples.
+	 * 
+	 * @param manager The database to save the games to.
+	 * @param games Number of games to generate.
+	 * @return Statistics of the saved batches, marked as failed if a batch could not be saved.
+	 */
+	public LoadStatistics SaveToDatabase(DatabaseManager manager, int games) {
+		LoadStatistics saved = new LoadStatistics();
+		List<GameTriple> batch = new ArrayList<>(GameDataPipeline.BatchSize + MaxTags + 10);
+		for (int appid = 0; appid < games && !saved.isFailed(); appid++) {
+			batch.addAll(nextGame(appid));
+			if (batch.size() >= GameDataPipeline.BatchSize || appid == games - 1) {
+				saved.add(manager.SaveToDatabase(batch));
+				batch.clear();
+				logger.debug("Generated games: {}/{}", appid + 1, games);
+			}
+		}
+		return saved;
+	}
+
+	/**
+	 * Generates games with the appids 0 to games - 1 into an N-Triples file,
+	 * with the same IRIs the DatabaseManager stores them with, so the file can be loaded
+	 * into any rdf4j repository. Files ending with .gz are compressed.
+	 * 
+	 * @param file The file to write, replaced if it exists.
+	 * @param games Number of games to generate.
+	 * @return The number of triples written.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public long WriteNTriples(File file, int games) throws IOException {
+		ValueFactory factory = SimpleValueFactory.getInstance();
+		Map<GameProperty, IRI> predicates = DatabaseManager.createPredicates(factory);
+		long[] written = new long[1];
+		try (OutputStream out = DatabaseManager.openOutput(file, DatabaseManager.isCompressed(file))) {
+			RDFWriter writer = Rio.createWriter(RDFFormat.NTRIPLES, out);
+			writer.startRDF();
+			generate(0, games, game -> {
+				for (Statement statement : DatabaseManager.createModel(factory, predicates, game)) {
+					writer.handleStatement(statement);
+					written[0]++;
+				}
+			});
+			writer.endRDF();
+		}
+		return written[0];
+	}
+
+	private Set<Integer> distinct(ZipfDistribution distribution, int count) {
+		Set<Integer> result = new LinkedHashSet<>();
+		count = Math.min(count, distribution.size());
+		// popular ranks are drawn again and again, give up after a while instead of looping on small lists
+		for (int attempt = 0; result.size() < count && attempt < count * 20; attempt++)
+			result.add(distribution.next(random));
+		return result;
+	}
+}
@@ -0,0 +1,158 @@
+package databaseControl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CatalogSync {
+
+	private static final Logger logger = LoggerFactory.getLogger(CatalogSync.class);
+
+	/**
+	 * Number of already stored games downloaded again by each sync to pick up changes,
+	 * going round the catalog in appId order. Default value is 1000.
+	 */
+	public static int RefreshPerRun = 1000;
+	/**
+	 * The file where the progress of a sync is saved. Default value is "sync.checkpoint".
+	 */
+	public static String CheckpointPath = "sync.checkpoint";
+
+	private final GameDownloader downloader;
+	private final DatabaseManager manager;
+
+	/**
+	 * @param downloader Used to download the app list and the games.
+	 * @param manager The database to bring up to date.
+	 */
+	public CatalogSync(GameDownloader downloader, DatabaseManager manager) {
+		this.downloader = downloader;
+		this.manager = manager;
+	}
+
+	/**
+	 * Brings the database up to date with the Steam app list without rebuilding it.
+	 * Games no longer on the app list are deleted, games not yet stored are downloaded,
+	 * and RefreshPerRun stored games are downloaded again and replaced.
+	 * The app list carries no modification date, so changed games are found by this
+	 * rolling refresh. Progress is saved to CheckpointPath after every committed batch,
+	 * if the sync is interrupted the next one skips the games already committed.
+	 * Games whose download failed keep their stored data and are not marked as done,
+	 * and the refresh cursor stops before the first failed refresh, so they are tried again.
+	 * AppIds Steam answers without data (success=false, 404) are saved in the checkpoint
+	 * and not downloaded as new games again, the rolling refresh goes over them with the
+	 * stored games, so one that becomes a game is found there.
+	 * GameDownloader.MaxDownload limits the number of games downloaded by one sync.
+	 * 
+	 * @return Statistics of the saved batches.
+	 * @throws Exception If the app list cannot be downloaded or a batch cannot be saved.
+	 */
+	public LoadStatistics run() throws Exception {
+		int[] remote = downloader.GetAppids();
+		if (remote.length == 0)
+			throw new IllegalStateException("The app list is empty, nothing is changed");
+		Set<Integer> remoteSet = new HashSet<>(remote.length * 2);
+		for (int appid : remote)
+			remoteSet.add(appid);
+		Set<Integer> stored = manager.getStoredAppids();
+
+		try (SyncCheckpoint checkpoint = SyncCheckpoint.open(new File(CheckpointPath))) {
+			Set<Integer> completed = checkpoint.getCompleted();
+			if (!completed.isEmpty())
+				logger.info("Resuming sync, games already done: {}", completed.size());
+			Set<Integer> empty = checkpoint.getEmpty();
+			List<Integer> delisted = new ArrayList<>();
+			for (int appid : empty) {
+				if (!remoteSet.contains(appid))
+					delisted.add(appid);
+			}
+			checkpoint.forgetEmpty(delisted);
+
+			List<Integer> removed = new ArrayList<>();
+			for (int appid : stored) {
+				if (!remoteSet.contains(appid))
+					removed.add(appid);
+			}
+			int removedCount = manager.RemoveGames(removed);
+
+			List<Integer> work = new ArrayList<>();
+			for (int appid : remote) {
+				if (!stored.contains(appid) && !completed.contains(appid) && !empty.contains(appid))
+					work.add(appid);
+			}
+			int newCount = work.size();
+
+			Set<Integer> known = new HashSet<>(stored);
+			known.addAll(empty);
+			List<Integer> refresh = selectRefresh(known, remoteSet, checkpoint.getRefreshCursor());
+			int newCursor = checkpoint.getRefreshCursor();
+			for (int appid : refresh) {
+				if (GameDownloader.MaxDownload > 0 && work.size() >= GameDownloader.MaxDownload)
+					break;
+				if (!completed.contains(appid))
+					work.add(appid);
+				newCursor = appid;
+			}
+			logger.info("Sync: {} removed, {} new, {} to refresh, {} without data skipped",
+					removedCount, newCount, refresh.size(), empty.size());
+
+			GameDataPipeline pipeline = new GameDataPipeline(downloader, manager);
+			LoadStatistics stats = pipeline
+					.setReplaceExisting(true)
+					.setOnBatchSaved(appids -> {
+						List<Integer> batchEmpty = new ArrayList<>();
+						List<Integer> batchFound = new ArrayList<>();
+						for (int appid : appids) {
+							if (pipeline.getEmptyAppids().contains(appid))
+								batchEmpty.add(appid);
+							else
+								batchFound.add(appid);
+						}
+						checkpoint.forgetEmpty(batchFound);
+						try {
+							checkpoint.markEmpty(batchEmpty);
+							checkpoint.markCompleted(appids);
+						} catch (Exception e) {
+							throw new IllegalStateException("Cannot write the sync checkpoint", e);
+						}
+					})
+					.run(work.stream().mapToInt(Integer::intValue).toArray());
+
+			Set<Integer> failed = new HashSet<>(pipeline.getFailedAppids());
+			for (int i = 0; i < refresh.size(); i++) {
+				if (failed.contains(refresh.get(i))) {
+					newCursor = i == 0 ? checkpoint.getRefreshCursor() : refresh.get(i - 1);
+					break;
+				}
+			}
+			if (!failed.isEmpty())
+				logger.warn("Sync: {} games failed and are tried again by the next sync", failed.size());
+			checkpoint.finish(newCursor);
+			return stats;
+		}
+	}
+
+	private static List<Integer> selectRefresh(Set<Integer> known, Set<Integer> remote, int cursor) {
+		List<Integer> candidates = new ArrayList<>();
+		for (int appid : known) {
+			if (remote.contains(appid))
+				candidates.add(appid);
+		}
+		Collections.sort(candidates);
+
+		List<Integer> result = new ArrayList<>();
+		int count = Math.min(RefreshPerRun, candidates.size());
+		int start = 0;
+		while (start < candidates.size() && candidates.get(start) <= cursor)
+			start++;
+		for (int i = 0; i < count; i++)
+			result.add(candidates.get((start + i) % candidates.size()));
+		return result;
+	}
+}
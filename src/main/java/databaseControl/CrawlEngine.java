@@ -0,0 +1,103 @@
+package databaseControl;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CrawlEngine {
+
+	private static final Logger logger = LoggerFactory.getLogger(CrawlEngine.class);
+
+	private final GameDownloader downloader;
+	private final int threads;
+
+	/**
+	 * Creates a crawl engine downloading games with the given downloader.
+	 * The rate and per-host limits are the ones set on the downloader's throttle.
+	 * 
+	 * @param downloader The downloader used to fetch the data of a single game.
+	 * @param threads The number of games downloaded at the same time.
+	 */
+	public CrawlEngine(GameDownloader downloader, int threads) {
+		this.downloader = downloader;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Downloads the data of every game in appids on a bounded worker pool.
+	 * The sink is called exactly once for every appid, on the calling thread,
+	 * in the same order as the appids, regardless of which download finished first.
+	 * Games that could not be downloaded get an empty list.
+	 * At most 2 * threads games are in flight, so a slow sink slows down the crawl.
+	 * 
+	 * @param appids The appIds of the games to download.
+	 * @param sink Receives the appid and the triples of one game at a time.
+	 * @throws InterruptedException If the calling thread is interrupted, remaining downloads are cancelled.
+	 */
+	public void crawl(int[] appids, BiConsumer<Integer, List<GameTriple>> sink) throws InterruptedException {
+		crawl(appids, sink, (appid, e) -> sink.accept(appid, Collections.emptyList()));
+	}
+
+	/**
+	 * Same as crawl, but the games that could not be downloaded are passed to onFailure
+	 * with the cause instead of being passed to the sink, keeping the order of appids.
+	 * 
+	 * @param appids The appIds of the games to download.
+	 * @param sink Receives the appid and the triples of one game at a time.
+	 * @param onFailure Receives the appid of a failed game and the cause, on the calling thread.
+	 * @throws InterruptedException If the calling thread is interrupted, remaining downloads are cancelled.
+	 */
+	public void crawl(int[] appids, BiConsumer<Integer, List<GameTriple>> sink, BiConsumer<Integer, Exception> onFailure)
+			throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads, newThreadFactory());
+		Deque<Integer> inFlightIds = new ArrayDeque<>();
+		Deque<Future<List<GameTriple>>> inFlight = new ArrayDeque<>();
+		int window = threads * 2;
+		try {
+			for (int appid : appids) {
+				if (inFlight.size() >= window)
+					deliver(inFlightIds.poll(), inFlight.poll(), sink, onFailure);
+				inFlightIds.add(appid);
+				inFlight.add(pool.submit(() -> downloader.GetDataForGame(appid)));
+			}
+			while (!inFlight.isEmpty())
+				deliver(inFlightIds.poll(), inFlight.poll(), sink, onFailure);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private void deliver(int appid, Future<List<GameTriple>> game, BiConsumer<Integer, List<GameTriple>> sink,
+			BiConsumer<Integer, Exception> onFailure) throws InterruptedException {
+		List<GameTriple> result;
+		try {
+			result = game.get();
+		} catch (ExecutionException e) {
+			logger.error("Downloading game " + appid + " failed", e.getCause());
+			Throwable cause = e.getCause();
+			onFailure.accept(appid, cause instanceof Exception ? (Exception) cause : e);
+			return;
+		}
+		sink.accept(appid, result);
+	}
+
+	private static ThreadFactory newThreadFactory() {
+		AtomicInteger counter = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, "crawler-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+}
@@ -1,9 +1,36 @@
 package databaseControl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.rdf4j.RDF4JException;
 import org.eclipse.rdf4j.model.*;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.QueryLanguage;
@@ -12,10 +39,27 @@ import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.http.HTTPRepository;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.RDFHandlerWrapper;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.lucene.LuceneSail;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.eclipse.rdf4j.sail.nativerdf.NativeStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Timer;
 
 import createOntology.OntologyClassCreator;
+import metrics.Metrics;
 
-public class DatabaseManager {
+public class DatabaseManager implements AutoCloseable {
 
 	/**
 	 * Name of the title property used in the database
@@ -38,11 +82,39 @@ public class DatabaseManager {
 	 */
 	public static final String tag = "tag";
 	/**
-	 * Separator used to join parts when passing an rdf triplet as a single string.
-	 * E.g. when sending data with appid 12345, whose tag is Horror the string is:
-	 * 12345_ns:tag_ns:Horror (ns is the namespace used)
+	 * Number of statements committed in one transaction by SaveToDatabase.
+	 * Default value is 10000.
+	 */
+	public static int BatchSize = 10000;
+	/**
+	 * Max number of pooled http connections to the rdf4j server,
+	 * used when many searches run at the same time. Default value is 32.
+	 */
+	public static int MaxConnections = 32;
+	/**
+	 * The repository used by the standard constructor.
+	 * Can be set with the store.backend system property (http, memory, native), default is http,
+	 * an unknown value is logged and http is used.
+	 */
+	public static StoreBackend Backend = StoreBackend.parse(System.getProperty("store.backend"), StoreBackend.HTTP);
+	/**
+	 * Directory of the embedded memory and native stores.
+	 * Can be set with the store.dir system property, default is "steamgames-store".
+	 */
+	public static String DataDir = System.getProperty("store.dir", "steamgames-store");
+	/**
+	 * If true the embedded stores are wrapped in a LuceneSail, which keeps a full text index
+	 * of the literals next to the data. Can be set with the store.lucene system property.
 	 */
-	public static final String separator = "_";
+	public static boolean UseLucene = Boolean.getBoolean("store.lucene");
+	/**
+	 * Age in seconds after which the tag index is built again, so changes made by another process,
+	 * e.g. a FillDB or SyncDB next to a running server, are seen. 0 means only changes made
+	 * through this manager rebuild it. Can be set with the store.index.maxage system property, default is 600.
+	 */
+	public static long TagIndexMaxAgeSeconds = Long.getLong("store.index.maxage", 600);
+
+	private static final Logger logger = LoggerFactory.getLogger(DatabaseManager.class);
 
 	private static final String generalQuery = "" 
 			+ "SELECT * WHERE"
@@ -51,19 +123,195 @@ public class DatabaseManager {
 				   + "?titlePred ?title ." 
 			+ "}";
 
+	private static final String storedAppidsQuery = "" 
+			+ "SELECT DISTINCT ?appid WHERE"
+			+ "{"
+			+ "?appid ?titlePred ?title ." 
+			+ "}";
+
+	private static final String propertyQuery = "" 
+			+ "SELECT ?appid ?value WHERE"
+			+ "{"
+			+ "?appid ?pred ?value ." 
+			+ "}";
+
+	private static final String tagSetQuery = "" 
+			+ "SELECT DISTINCT ?appid ?title WHERE"
+			+ "{"
+			+ "VALUES ?search { %s }"
+			+ "?appid %s ?search ;" 
+				   + "%s ?title ." 
+			+ "}";
+
 	private final Repository repo;
 	private final ValueFactory factory;
+	private final Map<GameProperty, IRI> predicates;
+	private final ResultCache<String, List<GameResult>> tagCache = new ResultCache<>();
+	private final ResultCache<Set<String>, List<GameResult>> tagSetCache = new ResultCache<>();
+	private volatile TagIndex tagIndex;
+	private final ReentrantLock tagIndexLock = new ReentrantLock();
+	private final AtomicInteger dataVersion = new AtomicInteger();
 
 	private static final String url = "http://localhost:8080/rdf4j-server";
 	private static final String repoId = "steamgames";
 
 	/**
 	 * Standard constructor, initializes and sets up
-	 * the httprepository and the object factory.
+	 * the repository set in Backend and the object factory.
+	 * For the http backend the connections to the server are pooled,
+	 * at most MaxConnections are open.
 	 */
 	public DatabaseManager() {
-		repo = new HTTPRepository(url, repoId);
+		this(createRepository(Backend, new File(DataDir), UseLucene));
+	}
+
+	/**
+	 * Creates a repository of the given kind, the same API works on all of them.
+	 * 
+	 * @param backend The kind of repository.
+	 * @param dataDir Directory of the embedded stores, ignored for http.
+	 * 		  For the memory store null means the data is not persisted.
+	 * @param lucene Wraps the embedded stores in a LuceneSail, ignored for http.
+	 * @return The repository, not initialized yet.
+	 */
+	public static Repository createRepository(StoreBackend backend, File dataDir, boolean lucene) {
+		if (backend == StoreBackend.HTTP)
+			return createHttpRepository(repoId);
+		
+		NotifyingSail sail;
+		if (backend == StoreBackend.NATIVE) {
+			sail = new NativeStore(dataDir);
+		} else if (dataDir != null) {
+			MemoryStore memory = new MemoryStore(dataDir);
+			memory.setPersist(true);
+			sail = memory;
+		} else {
+			sail = new MemoryStore();
+		}
+		
+		if (lucene) {
+			LuceneSail luceneSail = new LuceneSail();
+			if (dataDir != null)
+				luceneSail.setParameter(LuceneSail.LUCENE_DIR_KEY, new File(dataDir, "lucene").getPath());
+			else
+				luceneSail.setParameter(LuceneSail.LUCENE_RAMDIR_KEY, "true");
+			luceneSail.setBaseSail(sail);
+			sail = luceneSail;
+		}
+		return new SailRepository(sail);
+	}
+
+	/**
+	 * Creates a repository of the rdf4j server on localhost:8080, with at most MaxConnections pooled connections.
+	 * 
+	 * @param repositoryId The id of the repository on the server, "steamgames" for the crawled data.
+	 * @return The repository, not initialized yet.
+	 */
+	public static Repository createHttpRepository(String repositoryId) {
+		HTTPRepository repository = new HTTPRepository(url, repositoryId);
+		PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+		pool.setMaxTotal(MaxConnections);
+		pool.setDefaultMaxPerRoute(MaxConnections);
+		repository.setHttpClient(HttpClients.custom().useSystemProperties().setConnectionManager(pool).build());
+		return repository;
+	}
+
+	/**
+	 * Constructor for using a repository other than the rdf4j server,
+	 * e.g. a local memory or native store. Initializes the repository if needed.
+	 * 
+	 * @param repo The repository to store the data in.
+	 */
+	public DatabaseManager(Repository repo) {
+		if (!repo.isInitialized())
+			repo.initialize();
+		this.repo = repo;
 		factory = repo.getValueFactory();
+		predicates = createPredicates(factory);
+		Metrics.hitRatio("database.tagCache.hitRatio", tagCache::getHits, tagCache::getMisses);
+		Metrics.hitRatio("database.tagSetCache.hitRatio", tagSetCache::getHits, tagSetCache::getMisses);
+	}
+	
+	/**
+	 * Shuts down the repository. Embedded stores must be closed before
+	 * another process can open the same data directory.
+	 */
+	@Override
+	public void close() {
+		repo.shutDown();
+	}
+
+	/**
+	 * @return The cache of searchForTag results, for reading its statistics.
+	 */
+	public ResultCache<String, List<GameResult>> getTagCache() {
+		return tagCache;
+	}
+
+	/**
+	 * @return The cache of searchForTags results, keyed by the set of tags searched for.
+	 */
+	public ResultCache<Set<String>, List<GameResult>> getTagSetCache() {
+		return tagSetCache;
+	}
+
+	/**
+	 * Drops every cached search result. Called automatically when the data is changed
+	 * through this manager. Changes made elsewhere are seen when the cached results
+	 * and the tag index expire, or right away if this is called.
+	 */
+	public void invalidateCaches() {
+		tagCache.invalidateAll();
+		tagSetCache.invalidateAll();
+		dataVersion.incrementAndGet();
+		tagIndex = null;
+	}
+
+	/**
+	 * Returns the bitmap index of the tags of every stored game, used by boolean tag queries.
+	 * The index is built from the database the first time it is needed, after the data
+	 * is changed through this manager, and when it is older than TagIndexMaxAgeSeconds.
+	 * While an old index is being rebuilt the other callers get the old one instead of waiting.
+	 * 
+	 * @return The tag index of the current data.
+	 */
+	public TagIndex getTagIndex() {
+		TagIndex index = tagIndex;
+		if (index != null && !isExpired(index))
+			return index;
+		if (index != null) {
+			if (!tagIndexLock.tryLock())
+				return index;
+		} else {
+			tagIndexLock.lock();
+		}
+		try {
+			index = tagIndex;
+			if (index == null || isExpired(index)) {
+				int version = dataVersion.get();
+				index = TagIndex.build(this);
+				// not kept if the data changed while it was read
+				if (version == dataVersion.get())
+					tagIndex = index;
+				Metrics.timer("database.tagIndex").update(index.getBuildMillis(), TimeUnit.MILLISECONDS);
+				logger.info("Tag index built in {} ms: {}", index.getBuildMillis(), index);
+			}
+			return index;
+		} finally {
+			tagIndexLock.unlock();
+		}
+	}
+
+	/**
+	 * @return The tag index if it is built, null otherwise. Does not build it, used for statistics.
+	 */
+	public TagIndex peekTagIndex() {
+		return tagIndex;
+	}
+
+	private static boolean isExpired(TagIndex index) {
+		return TagIndexMaxAgeSeconds > 0
+				&& System.currentTimeMillis() - index.getBuiltAt() >= TimeUnit.SECONDS.toMillis(TagIndexMaxAgeSeconds);
 	}
 	
 	/**
@@ -71,33 +319,352 @@ public class DatabaseManager {
 	 */
 	public void ResetDatabase() {
 		try (RepositoryConnection conn = repo.getConnection()) {
+			conn.clear();
 			conn.clearNamespaces();
+		} finally {
+			invalidateCaches();
 		}
 	}
 
 	
 	/**
-	 * Creates triples from the String list provided and uploads them
-	 * to the rdf database. The third part of the triplet will be treated as
-	 * a literal, the first two parts as IRIs
+	 * Uploads the triples provided to the rdf database. The appid and the
+	 * property are saved as IRIs, the value as a literal, the metaScore as an xsd:int literal.
+	 * The triples are committed in transactions of BatchSize statements.
+	 * If a batch fails it is rolled back, the remaining data is not saved
+	 * and the returned statistics are marked as failed.
 	 * 
-	 * @param data String list, where each entry is an RDF triplet joined by DatabaseManager.SEPARATOR
+	 * @param data The triples to save.
+	 * @return Statistics of the committed batches.
 	 */
-	public void SaveToDatabase(List<String> data) {
+	public LoadStatistics SaveToDatabase(List<GameTriple> data) {
+		return save(data, false);
+	}
+
+	/**
+	 * Same as SaveToDatabase, but every game in data first has all of its stored
+	 * triples deleted, in the same transaction its new triples are added in.
+	 * 
+	 * @param data The triples to save, should contain every triple of the games in it.
+	 * @return Statistics of the committed batches.
+	 */
+	public LoadStatistics ReplaceInDatabase(List<GameTriple> data) {
+		return save(data, true);
+	}
+
+	private LoadStatistics save(List<GameTriple> data, boolean replace) {
+		LoadStatistics stats = new LoadStatistics();
+		Set<Resource> replaced = new HashSet<>();
+		int batchSize = Math.max(1, BatchSize);
 		try (RepositoryConnection conn = repo.getConnection()) {
-			for (String entry : data) {
-				String[] parts = entry.split(separator);
-				if (parts.length != 3)
-					throw new Exception("There was a " + separator + " in the data: " + entry);
+			for (int from = 0; from < data.size(); from += batchSize) {
+				long start = System.nanoTime();
+				Model batch = createModel(data.subList(from, Math.min(from + batchSize, data.size())));
+				conn.begin();
+				try {
+					if (replace) {
+						for (Resource appid : batch.subjects()) {
+							if (replaced.add(appid))
+								conn.remove(appid, null, null);
+						}
+					}
+					conn.add(batch);
+					conn.commit();
+				} catch (Exception e) {
+					conn.rollback();
+					throw e;
+				}
+				recordBatch(stats, batch.size(), System.nanoTime() - start);
+			}
+		} catch (Exception e) {
+			logger.error("Saving to the database failed", e);
+			stats.markFailed();
+		} finally {
+			if (stats.getBatches() > 0)
+				invalidateCaches();
+		}
+		return stats;
+	}
 
-				IRI appid = factory.createIRI(OntologyClassCreator.namespace, parts[0]);
-				IRI pred = factory.createIRI(OntologyClassCreator.namespace, parts[1]);
-				Literal value = factory.createLiteral(parts[2]);
+	private static void recordBatch(LoadStatistics stats, int size, long nanos) {
+		stats.addBatch(size, nanos);
+		Metrics.meter("database.triples").mark(size);
+		Metrics.histogram("database.triplesPerSecond").update(size * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1));
+		Metrics.timer("database.commit").update(nanos, TimeUnit.NANOSECONDS);
+	}
 
-				conn.add(appid, pred, value);
+	/**
+	 * Deletes every triple of the given games from the database,
+	 * in transactions of BatchSize games.
+	 * 
+	 * @param appids The appIds of the games to delete.
+	 * @return The number of games deleted, less than requested if a transaction failed.
+	 */
+	public int RemoveGames(Collection<Integer> appids) {
+		List<Integer> list = new ArrayList<>(appids);
+		int removed = 0;
+		int batchSize = Math.max(1, BatchSize);
+		try (RepositoryConnection conn = repo.getConnection()) {
+			for (int from = 0; from < list.size(); from += batchSize) {
+				List<Integer> batch = list.subList(from, Math.min(from + batchSize, list.size()));
+				conn.begin();
+				try {
+					for (int appid : batch)
+						conn.remove(factory.createIRI(OntologyClassCreator.namespace, Integer.toString(appid)), null, null);
+					conn.commit();
+				} catch (Exception e) {
+					conn.rollback();
+					throw e;
+				}
+				removed += batch.size();
 			}
 		} catch (Exception e) {
-			e.printStackTrace();
+			logger.error("Removing games from the database failed", e);
+		} finally {
+			if (removed > 0)
+				invalidateCaches();
+		}
+		return removed;
+	}
+
+	/**
+	 * Returns the appIds of every game stored in the database, that is every
+	 * appId with a title.
+	 * 
+	 * @return The stored appIds.
+	 */
+	public Set<Integer> getStoredAppids() {
+		Set<Integer> result = new HashSet<>();
+		try (RepositoryConnection conn = repo.getConnection()) {
+			TupleQuery query = conn.prepareTupleQuery(QueryLanguage.SPARQL, storedAppidsQuery);
+			query.setBinding("titlePred", predicates.get(GameProperty.TITLE));
+			try (TupleQueryResult queryResult = query.evaluate()) {
+				while (queryResult.hasNext()) {
+					IRI appid = (IRI) queryResult.next().getValue("appid");
+					result.add(Integer.parseInt(appid.getLocalName()));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads every stored value of a property, one statement at a time.
+	 * 
+	 * @param property The property to read.
+	 * @param consumer Receives the appid of the game and the value.
+	 */
+	public void forEachValue(GameProperty property, BiConsumer<Integer, String> consumer) {
+		try (RepositoryConnection conn = repo.getConnection()) {
+			TupleQuery query = conn.prepareTupleQuery(QueryLanguage.SPARQL, propertyQuery);
+			query.setBinding("pred", predicates.get(property));
+			try (TupleQueryResult queryResult = query.evaluate()) {
+				while (queryResult.hasNext()) {
+					BindingSet set = queryResult.next();
+					IRI appid = (IRI) set.getValue("appid");
+					consumer.accept(Integer.parseInt(appid.getLocalName()), set.getValue("value").stringValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes every statement and namespace of the database to a file, one statement at a time,
+	 * so the data is never held in memory. The format is chosen by the extension of the file,
+	 * see getFormat. The file is written next to the target and renamed when it is complete.
+	 * 
+	 * @param file The file to write, replaced if it exists.
+	 * @return The number of statements written.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public long ExportDatabase(File file) throws IOException {
+		RDFFormat format = getFormat(file);
+		File temp = new File(file.getPath() + ".tmp");
+		long[] written = new long[1];
+		try (Timer.Context time = Metrics.timer("database.export").time();
+				OutputStream out = openOutput(temp, isCompressed(file));
+				RepositoryConnection conn = repo.getConnection()) {
+			conn.export(new RDFHandlerWrapper(Rio.createWriter(format, out)) {
+				@Override
+				public void handleStatement(Statement statement) throws RDFHandlerException {
+					super.handleStatement(statement);
+					written[0]++;
+				}
+			});
+		} catch (IOException | RuntimeException e) {
+			temp.delete();
+			throw e;
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		logger.info("Exported {} statements to {}", written[0], file);
+		return written[0];
+	}
+
+	/**
+	 * Adds the statements of a file written by ExportDatabase, or any other RDF file of a format
+	 * known by getFormat, to the database. The file is parsed as a stream and committed
+	 * in transactions of BatchSize statements, so its size is not limited by the memory.
+	 * The data already in the database is kept, call ResetDatabase first to restore a snapshot.
+	 * If the file is invalid or a batch fails, the batches committed before are kept
+	 * and the returned statistics are marked as failed.
+	 * 
+	 * @param file The file to read.
+	 * @return Statistics of the committed batches.
+	 * @throws IOException If the file cannot be opened or read.
+	 */
+	public LoadStatistics ImportDatabase(File file) throws IOException {
+		RDFFormat format = getFormat(file);
+		LoadStatistics stats = new LoadStatistics();
+		try (InputStream in = openInput(file); RepositoryConnection conn = repo.getConnection()) {
+			RDFParser parser = Rio.createParser(format, factory);
+			parser.setRDFHandler(new ImportHandler(conn, stats));
+			parser.parse(in, OntologyClassCreator.namespace);
+		} catch (RDF4JException e) {
+			logger.error("Importing " + file + " failed", e);
+			stats.markFailed();
+		} finally {
+			if (stats.getBatches() > 0)
+				invalidateCaches();
+		}
+		return stats;
+	}
+
+	/**
+	 * Commits the parsed statements in batches of BatchSize, the namespaces with the batch they are read in.
+	 */
+	private static final class ImportHandler extends AbstractRDFHandler {
+		private final RepositoryConnection conn;
+		private final LoadStatistics stats;
+		private final int batchSize = Math.max(1, BatchSize);
+		private final List<Statement> batch = new ArrayList<>(batchSize);
+		private final Map<String, String> namespaces = new HashMap<>();
+		private long start = System.nanoTime();
+
+		ImportHandler(RepositoryConnection conn, LoadStatistics stats) {
+			this.conn = conn;
+			this.stats = stats;
+		}
+
+		@Override
+		public void handleNamespace(String prefix, String uri) {
+			namespaces.put(prefix, uri);
+		}
+
+		@Override
+		public void handleStatement(Statement statement) {
+			batch.add(statement);
+			if (batch.size() >= batchSize)
+				commit();
+		}
+
+		@Override
+		public void endRDF() {
+			commit();
+		}
+
+		private void commit() {
+			if (batch.isEmpty() && namespaces.isEmpty())
+				return;
+			conn.begin();
+			try {
+				for (Map.Entry<String, String> namespace : namespaces.entrySet())
+					conn.setNamespace(namespace.getKey(), namespace.getValue());
+				conn.add(batch);
+				conn.commit();
+			} catch (RuntimeException e) {
+				conn.rollback();
+				throw e;
+			}
+			recordBatch(stats, batch.size(), System.nanoTime() - start);
+			logger.debug("Imported statements: {}", stats.getStatements());
+			batch.clear();
+			namespaces.clear();
+			start = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Returns the RDF format of an export or import file by its extension, ignoring a trailing .gz:
+	 * .nt N-Triples, .ttl Turtle, .brf binary RDF, or any other extension known by rdf4j.
+	 * N-Triples and binary RDF are the fastest to write and parse.
+	 * 
+	 * @param file The file.
+	 * @return The format of the file.
+	 * @throws IllegalArgumentException If the extension is not an RDF format.
+	 */
+	public static RDFFormat getFormat(File file) {
+		String name = file.getName();
+		if (isCompressed(file))
+			name = name.substring(0, name.length() - 3);
+		return Rio.getParserFormatForFileName(name)
+				.orElseThrow(() -> new IllegalArgumentException("Unknown RDF format: " + file.getName() + ", use .nt, .ttl or .brf, optionally with .gz"));
+	}
+
+	/**
+	 * @return True if the name of the file ends with .gz.
+	 */
+	static boolean isCompressed(File file) {
+		return file.getName().endsWith(".gz");
+	}
+
+	/**
+	 * Opens a buffered stream writing the file, gzip compressed if requested.
+	 */
+	static OutputStream openOutput(File file, boolean compressed) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+		return compressed ? new GZIPOutputStream(out, 1 << 16) : out;
+	}
+
+	/**
+	 * Opens a buffered stream reading the file, decompressed if its name ends with .gz.
+	 */
+	static InputStream openInput(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		return isCompressed(file) ? new GZIPInputStream(in, 1 << 16) : new BufferedInputStream(in, 1 << 16);
+	}
+
+	private Model createModel(List<GameTriple> entries) {
+		return createModel(factory, predicates, entries);
+	}
+
+	/**
+	 * @return The predicate IRI of every game property.
+	 */
+	static Map<GameProperty, IRI> createPredicates(ValueFactory factory) {
+		Map<GameProperty, IRI> predicates = new EnumMap<>(GameProperty.class);
+		for (GameProperty property : GameProperty.values())
+			predicates.put(property, factory.createIRI(OntologyClassCreator.namespace, property.getLocalName()));
+		return predicates;
+	}
+
+	/**
+	 * Converts the triples to the statements stored in the database.
+	 * 
+	 * @param factory Creates the values of the statements.
+	 * @param predicates The predicates returned by createPredicates.
+	 * @param entries The triples to convert.
+	 * @return The statements, in the order of the triples.
+	 */
+	static Model createModel(ValueFactory factory, Map<GameProperty, IRI> predicates, List<GameTriple> entries) {
+		Model model = new LinkedHashModel(entries.size());
+		for (GameTriple entry : entries) {
+			IRI appid = factory.createIRI(OntologyClassCreator.namespace, Integer.toString(entry.getAppid()));
+			Literal value = entry.getProperty() == GameProperty.META_SCORE
+					? createNumber(factory, entry.getValue()) : factory.createLiteral(entry.getValue());
+			model.add(factory.createStatement(appid, predicates.get(entry.getProperty()), value));
+		}
+		return model;
+	}
+
+	/**
+	 * @return The value as an xsd:int literal, so SPARQL can compare it as a number,
+	 * 		   or as a plain literal if it is not an integer.
+	 */
+	private static Literal createNumber(ValueFactory factory, String value) {
+		try {
+			return factory.createLiteral(Integer.parseInt(value.trim()));
+		} catch (NumberFormatException e) {
+			return factory.createLiteral(value);
 		}
 	}
 
@@ -106,32 +673,81 @@ public class DatabaseManager {
 	 * adds the descendants of that ontolgy class to the search query.
 	 * Searches the database for all the extra tags, and the original tag.
 	 * Returns the appIds and the titles of the found games.
+	 * Results are cached per tag until the data is changed through this manager.
 	 * 
 	 * 
 	 * @param tag The tag to search for.
-	 * @return A String list, where each entry is an appid and a title joined by the SEPARATOR
-	 *		   E.g. 12345_GameTitle
+	 * @return The appids and titles of the games with the tag.
 	 */
-	public List<String> searchForTag(String tag){
-		List<String> result = new ArrayList<>();
-		try(RepositoryConnection conn = repo.getConnection()){
+	public List<GameResult> searchForTag(String tag){
+		try {
+			return new ArrayList<>(tagCache.get(tag, () -> queryTag(tag)));
+		} catch (Exception e) {
+			logger.error("Searching for tag " + tag + " failed", e);
+			return new ArrayList<>();
+		}
+	}
+
+	private List<GameResult> queryTag(String tag) {
+		List<GameResult> result = new ArrayList<>();
+		try(Timer.Context time = Metrics.timer("database.searchForTag").time();
+				RepositoryConnection conn = repo.getConnection()){
 			TupleQuery query = conn.prepareTupleQuery(QueryLanguage.SPARQL, generalQuery);
 			
-			query.setBinding("pred", factory.createIRI(OntologyClassCreator.namespace, DatabaseManager.tag));
+			query.setBinding("pred", predicates.get(GameProperty.TAG));
 			query.setBinding("search", factory.createLiteral(tag));
-			query.setBinding("titlePred", factory.createIRI(OntologyClassCreator.namespace, DatabaseManager.title));
+			query.setBinding("titlePred", predicates.get(GameProperty.TITLE));
 			
-			TupleQueryResult queryResult = query.evaluate();
+			readResults(query, result);
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Searches the database for games having any of the given tags, with a single query.
+	 * Each game is returned once, no matter how many of the tags it has.
+	 * Results are cached per set of tags until the data is changed through this manager.
+	 * 
+	 * @param tags The tags to search for.
+	 * @return The appids and titles of the games with at least one of the tags.
+	 */
+	public List<GameResult> searchForTags(Collection<String> tags){
+		if (tags.isEmpty())
+			return new ArrayList<>();
+		
+		Set<String> key = new HashSet<>(tags);
+		try {
+			return new ArrayList<>(tagSetCache.get(key, () -> queryTags(key)));
+		} catch (Exception e) {
+			logger.error("Searching for tags " + key + " failed", e);
+			return new ArrayList<>();
+		}
+	}
+
+	private List<GameResult> queryTags(Set<String> tags) {
+		List<GameResult> result = new ArrayList<>();
+		StringBuilder values = new StringBuilder();
+		for (String tag : tags)
+			values.append(NTriplesUtil.toNTriplesString(factory.createLiteral(tag))).append(' ');
+		String queryString = String.format(tagSetQuery, values,
+				NTriplesUtil.toNTriplesString(predicates.get(GameProperty.TAG)),
+				NTriplesUtil.toNTriplesString(predicates.get(GameProperty.TITLE)));
+		
+		try(Timer.Context time = Metrics.timer("database.searchForTags").time();
+				RepositoryConnection conn = repo.getConnection()){
+			readResults(conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString), result);
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	private void readResults(TupleQuery query, List<GameResult> result) {
+		try (TupleQueryResult queryResult = query.evaluate()) {
 			while(queryResult.hasNext()) {
 				BindingSet set = queryResult.next();
 				IRI appid = (IRI)set.getValue("appid");
 				Literal title = (Literal)set.getValue("title");
-				result.add(appid.getLocalName() + separator + title.getLabel());
+				result.add(new GameResult(Integer.parseInt(appid.getLocalName()), title.getLabel()));
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
 		}
-		return result;
-		
 	}
 }
@@ -0,0 +1,196 @@
+package databaseControl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class GameDataPipeline {
+
+	private static final Logger logger = LoggerFactory.getLogger(GameDataPipeline.class);
+
+	/**
+	 * Number of triples sent to the database in one SaveToDatabase call.
+	 * Default value is 5000.
+	 */
+	public static int BatchSize = 5000;
+	/**
+	 * Number of downloaded games that may wait for the database at the same time.
+	 * When the queue is full the download waits. Default value is 64.
+	 */
+	public static int QueueCapacity = 64;
+
+	private static final class Game {
+		final int appid;
+		// null if the download failed
+		final List<GameTriple> triples;
+
+		Game(int appid, List<GameTriple> triples) {
+			this.appid = appid;
+			this.triples = triples;
+		}
+	}
+
+	private static final Game endOfStream = new Game(-1, Collections.emptyList());
+
+	private final GameDownloader downloader;
+	private final DatabaseManager manager;
+	private boolean replaceExisting;
+	private Consumer<List<Integer>> onBatchSaved = appids -> {};
+	private final List<Integer> failed = new ArrayList<>();
+	private final Set<Integer> empty = new LinkedHashSet<>();
+
+	/**
+	 * Creates a pipeline streaming games from the downloader into the database.
+	 * 
+	 * @param downloader Used to download the games.
+	 * @param manager The database the triples are saved to.
+	 */
+	public GameDataPipeline(GameDownloader downloader, DatabaseManager manager) {
+		this.downloader = downloader;
+		this.manager = manager;
+	}
+
+	/**
+	 * If set, the data already stored for a downloaded game is deleted in the same
+	 * transaction its new data is saved in. Used when refreshing games. Default is false.
+	 * 
+	 * @param replaceExisting Replace the stored data of the games.
+	 * @return This pipeline.
+	 */
+	public GameDataPipeline setReplaceExisting(boolean replaceExisting) {
+		this.replaceExisting = replaceExisting;
+		return this;
+	}
+
+	/**
+	 * Sets a callback run after each batch is committed, with the appids of every game
+	 * handled by that batch, including the ones that turned out not to be games.
+	 * Games whose download failed are not included, see getFailedAppids.
+	 * 
+	 * @param onBatchSaved The callback, run on the thread that called run.
+	 * @return This pipeline.
+	 */
+	public GameDataPipeline setOnBatchSaved(Consumer<List<Integer>> onBatchSaved) {
+		this.onBatchSaved = onBatchSaved;
+		return this;
+	}
+
+	/**
+	 * Downloads the given games on a producer thread while the calling thread
+	 * saves them to the database in batches of BatchSize triples.
+	 * The two sides are connected by a queue of QueueCapacity games, so memory use
+	 * does not depend on the number of games, and every full batch is persisted
+	 * before the download finishes.
+	 * Games whose download failed are left out, their stored data is not touched.
+	 * 
+	 * @param appids The appIds of the games to download, GameDownloader.MaxDownload is applied.
+	 * @return Statistics of every batch saved.
+	 * @throws Exception If the download thread failed, a batch could not be saved
+	 * 		   or the thread is interrupted.
+	 */
+	public LoadStatistics run(int[] appids) throws Exception {
+		failed.clear();
+		empty.clear();
+		BlockingQueue<Game> queue = new ArrayBlockingQueue<>(QueueCapacity);
+		Exception[] failure = new Exception[1];
+
+		Thread producer = new Thread(() -> {
+			try {
+				downloader.StreamGameData(appids, (appid, triples) -> put(queue, new Game(appid, triples)),
+						(appid, e) -> put(queue, new Game(appid, null)));
+			} catch (Exception e) {
+				failure[0] = e;
+			} finally {
+				putEndOfStream(queue);
+			}
+		}, "pipeline-producer");
+		producer.setDaemon(true);
+		producer.start();
+
+		LoadStatistics saved = new LoadStatistics();
+		List<GameTriple> batch = new ArrayList<>(BatchSize);
+		List<Integer> batchAppids = new ArrayList<>();
+		try {
+			Game game;
+			while ((game = queue.take()) != endOfStream) {
+				if (game.triples == null) {
+					failed.add(game.appid);
+					continue;
+				}
+				if (game.triples.isEmpty())
+					empty.add(game.appid);
+				batch.addAll(game.triples);
+				batchAppids.add(game.appid);
+				if (batch.size() >= BatchSize) {
+					flush(batch, batchAppids, saved);
+				}
+			}
+			flush(batch, batchAppids, saved);
+		} catch (Exception e) {
+			producer.interrupt();
+			throw e;
+		}
+		producer.join();
+		if (failure[0] != null)
+			throw failure[0];
+		if (!failed.isEmpty())
+			logger.warn("{} games could not be downloaded and were skipped", failed.size());
+		return saved;
+	}
+
+	/**
+	 * @return The appids of the games whose download failed in the last run, in the order of the download.
+	 */
+	public List<Integer> getFailedAppids() {
+		return Collections.unmodifiableList(failed);
+	}
+
+	/**
+	 * @return The appids Steam answered without data in the last run, e.g. success=false or 404,
+	 * 		   in the order of the download. Filled as the games are saved, so it can be read by the onBatchSaved callback.
+	 */
+	public Set<Integer> getEmptyAppids() {
+		return Collections.unmodifiableSet(empty);
+	}
+
+	private static void put(BlockingQueue<Game> queue, Game game) {
+		try {
+			queue.put(game);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException("Interrupted while waiting for the database", e);
+		}
+	}
+
+	private void flush(List<GameTriple> batch, List<Integer> batchAppids, LoadStatistics saved) {
+		if (batchAppids.isEmpty())
+			return;
+		if (!batch.isEmpty()) {
+			LoadStatistics stats = replaceExisting ? manager.ReplaceInDatabase(batch) : manager.SaveToDatabase(batch);
+			saved.add(stats);
+			logger.info("Saved batch: {}", stats);
+			if (stats.isFailed())
+				throw new IllegalStateException("Saving a batch failed, stopping the pipeline");
+		}
+		onBatchSaved.accept(batchAppids);
+		batch.clear();
+		batchAppids.clear();
+	}
+
+	private static void putEndOfStream(BlockingQueue<Game> queue) {
+		try {
+			queue.put(endOfStream);
+		} catch (InterruptedException e) {
+			// only the consumer interrupts the producer, and then it no longer reads the queue
+			queue.offer(endOfStream);
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -1,23 +1,26 @@
 package databaseControl;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
-import org.apache.commons.lang3.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import webFetch.HttpFetcher;
+import webFetch.HttpStatusException;
+import webFetch.RequestThrottle;
+import webFetch.ResponseCache;
 
-public class GameDownloader {
+public class GameDownloader implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(GameDownloader.class);
 
 	/**
 	 * Part of the non-public api url of Steam, returns a json object
@@ -35,174 +38,271 @@ public class GameDownloader {
 	 * An appId needs to be appended to the end before using.
 	 */
 	public static final String individualGamePageUrl = "https://store.steampowered.com/app/";
-	private static final String tagExtractRegex = "<a href=\"https:\\/\\/store\\.steampowered\\.com\\/tags\\/.+?\" class=\"app_tag\" (style=\".+?\")?>(.+?)(\\t)+?<\\/a>";
 
-	private final JsonParser jp;
+	private final String appListUrl;
+	private final String gameDataUrl;
+	private final String gamePageUrl;
+	private final HttpFetcher fetcher;
 	/**
 	 * Set the max number of games to download from the steam. 
 	 * These downloads might take a few minutes. Set to -1 for all games.
 	 * Default value is 100.
 	 */
 	public static int MaxDownload = 100;
+	/**
+	 * Number of games downloaded at the same time by DownloadGameData.
+	 * Default value is 8.
+	 */
+	public static int CrawlThreads = 8;
+	/**
+	 * Max number of requests sent to Steam per second, across all threads.
+	 * Set to 0 to disable the limit. Default value is 4.
+	 */
+	public static double RequestsPerSecond = 4;
+	/**
+	 * Max number of requests open at the same time to a single Steam host.
+	 * Set to 0 to disable the limit. Default value is 4.
+	 */
+	public static int MaxConnectionsPerHost = 4;
+	/**
+	 * Directory of the on-disk response cache, null to download everything every time.
+	 * Can be set with the fetch.cache system property, by default there is no cache.
+	 */
+	public static String CacheDir = System.getProperty("fetch.cache");
+	/**
+	 * Max size of the response cache in MB, the least recently used responses are deleted above it.
+	 * Can be set with the fetch.cache.maxmb system property, default is 1024.
+	 */
+	public static long CacheMaxMegabytes = Long.getLong("fetch.cache.maxmb", 1024);
+	/**
+	 * Cached responses younger than this many minutes are used without asking Steam,
+	 * older ones are revalidated. Can be set with the fetch.cache.maxage system property, default is 0.
+	 */
+	public static long CacheMaxAgeMinutes = Long.getLong("fetch.cache.maxage", 0);
+	/**
+	 * If true every response is replayed from the cache and Steam is never contacted,
+	 * games that are not cached are skipped. Can be set with the fetch.offline system property.
+	 */
+	public static boolean Offline = Boolean.getBoolean("fetch.offline");
 
 	/**
-	 * Standard constructor.
+	 * Standard constructor, uses the Steam urls and the static throttle and cache settings.
 	 */
 	public GameDownloader() {
-		jp = new JsonParser();
+		this(gamesListUrl, individualGameDataUrl, individualGamePageUrl, createFetcher());
 	}
 
 	/**
-	 * Uses the gamesListUrl to download all the appIds from Steam.
+	 * Constructor for downloading from somewhere other than Steam, e.g. a local stub server.
+	 * The urls must follow the same format as the Steam urls of this class.
 	 * 
-	 * @return Integer list containing all the appIds returned from Steam.
+	 * @param appListUrl Replaces gamesListUrl.
+	 * @param gameDataUrl Replaces individualGameDataUrl, the appId is appended to it.
+	 * @param gamePageUrl Replaces individualGamePageUrl, the appId is appended to it.
+	 * @param fetcher Sends the requests, shared by all downloads, closed with this downloader.
 	 */
-	public List<Integer> GetAppids() {
-		List<Integer> result = new ArrayList<>();
+	public GameDownloader(String appListUrl, String gameDataUrl, String gamePageUrl, HttpFetcher fetcher) {
+		this.appListUrl = appListUrl;
+		this.gameDataUrl = gameDataUrl;
+		this.gamePageUrl = gamePageUrl;
+		this.fetcher = fetcher;
+	}
+
+	private static HttpFetcher createFetcher() {
+		HttpFetcher fetcher = new HttpFetcher(new RequestThrottle(RequestsPerSecond, MaxConnectionsPerHost),
+				MaxConnectionsPerHost);
+		if (CacheDir == null) {
+			if (Offline)
+				throw new IllegalStateException("Offline mode needs a response cache, set fetch.cache");
+			return fetcher;
+		}
 		try {
-			URL url = new URL(gamesListUrl);
-			URLConnection request = url.openConnection();
-			request.connect();
-			JsonElement root = jp.parse(new InputStreamReader((InputStream) request.getContent()));
-			JsonObject rootobj = root.getAsJsonObject();
-
-			JsonArray apps = rootobj.get("applist").getAsJsonObject().get("apps").getAsJsonObject().get("app")
-					.getAsJsonArray();
-			JsonObject app;
-			for(int i = 0; i < apps.size(); i++) {
-				app = apps.get(i).getAsJsonObject();
-				result.add(app.get("appid").getAsInt());
-			}
+			return fetcher.setCache(new ResponseCache(new File(CacheDir), CacheMaxMegabytes * 1024 * 1024,
+					TimeUnit.MINUTES.toMillis(CacheMaxAgeMinutes), Offline));
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot open the response cache in " + CacheDir, e);
+		}
+	}
 
+	/**
+	 * Uses the gamesListUrl to download all the appIds from Steam.
+	 * The response is parsed as a stream, the app names are skipped.
+	 * 
+	 * @return Array containing all the appIds returned from Steam, empty if the download failed.
+	 * @see SteamJsonParser
+	 */
+	public int[] GetAppids() {
+		try {
+			return fetcher.fetch("applist", appListUrl, is -> SteamJsonParser.parseAppids(
+					new InputStreamReader(is, StandardCharsets.UTF_8)));
 		} catch (Exception e) {
-			e.printStackTrace();
+			logger.error("Downloading the app list failed", e);
 		}
-
-		return result;
+		return new int[0];
 	}
 
 	/**
 	 * Downloads the data to be stored later from Steam. 
-	 * Creates a String list, where each entry is an rdf triplet
-	 * in the same format as used by DatabaseManager.
-	 * The data returned currently includes title, metascore, category, tags and type
+	 * Creates a list, where each entry is an rdf triplet of a game.
+	 * The data returned currently includes title, metascore, category, tags and type.
+	 * Games are downloaded concurrently by a CrawlEngine with CrawlThreads threads,
+	 * the result is in the same order as appids.
 	 * 
 	 * @param appids
 	 * @return
 	 * @see DatabaseManager
+	 * @see CrawlEngine
 	 */
-	public List<String> DownloadGameData(List<Integer> appids) {
-		List<String> result = new ArrayList<>();
-		int i = 0;
-		for (int appid : appids) {
-			if (i >= MaxDownload && MaxDownload > 0)
-				break; // for debugging
-			
-			System.out.print(i + "/" + MaxDownload + " " );
-			List<String> gameData = GetDataForGame(appid);
-			result.addAll(gameData);
-			i++;
+	public List<GameTriple> DownloadGameData(int[] appids) {
+		List<GameTriple> result = new ArrayList<>();
+		try {
+			StreamGameData(appids, (appid, gameData) -> result.addAll(gameData));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 		return result;
 	}
 
-	private List<String> GetDataForGame(int appid) {
-		List<String> result = new ArrayList<>();
+	/**
+	 * Same as DownloadGameData, but instead of collecting every triple into one list
+	 * the triples of each game are passed to the sink as soon as the game is ready,
+	 * in the same order as appids. The sink is called for every appid, with an empty
+	 * list for the ones that are not games or failed. A sink that blocks slows down the download.
+	 * 
+	 * @param appids The appIds of the games to download, MaxDownload is applied.
+	 * @param sink Receives the appid and the triples of one game at a time.
+	 * @throws InterruptedException If the thread is interrupted while downloading.
+	 */
+	public void StreamGameData(int[] appids, BiConsumer<Integer, List<GameTriple>> sink) throws InterruptedException {
+		StreamGameData(appids, sink, (appid, e) -> sink.accept(appid, new ArrayList<>()));
+	}
+
+	/**
+	 * Same as StreamGameData, but the games whose download failed, e.g. because Steam kept
+	 * answering with 5xx or a page was not in the offline cache, are passed to onFailure
+	 * instead of the sink, in their place in the order of appids. Games that Steam answered
+	 * with 404 for, or that are not games, still go to the sink with the data that exists.
+	 * Used when the stored data of a game is replaced, so a failed download does not
+	 * replace it with partial data.
+	 * 
+	 * @param appids The appIds of the games to download, MaxDownload is applied.
+	 * @param sink Receives the appid and the triples of one game at a time.
+	 * @param onFailure Receives the appid of a failed game and the cause.
+	 * @throws InterruptedException If the thread is interrupted while downloading.
+	 */
+	public void StreamGameData(int[] appids, BiConsumer<Integer, List<GameTriple>> sink,
+			BiConsumer<Integer, Exception> onFailure) throws InterruptedException {
+		if (MaxDownload > 0 && appids.length > MaxDownload)
+			appids = Arrays.copyOf(appids, MaxDownload); // for debugging
+		
+		int total = appids.length;
+		int[] done = new int[1];
+		new CrawlEngine(this, CrawlThreads).crawl(appids, (appid, gameData) -> {
+			logger.debug("{}/{}", ++done[0], total);
+			sink.accept(appid, gameData);
+		}, (appid, e) -> {
+			logger.debug("{}/{}", ++done[0], total);
+			onFailure.accept(appid, e);
+		});
+	}
+
+	/**
+	 * Downloads the data and, for games, the tags of one app.
+	 * 
+	 * @param appid The appId of the app.
+	 * @return The triples of the app, empty if it is not a game or Steam does not know it.
+	 * @throws IOException If a request failed, the data of the app is then incomplete.
+	 * @throws InterruptedException If the thread is interrupted while downloading.
+	 */
+	List<GameTriple> GetDataForGame(int appid) throws IOException, InterruptedException {
+		List<GameTriple> result;
 		try {
-			String gameUrl = individualGameDataUrl + appid;
-			URL url = new URL(gameUrl);
-			URLConnection request = url.openConnection();
-			request.connect();
-
-			JsonElement root = jp.parse(new InputStreamReader((InputStream) request.getContent()));
-			JsonObject gameObj = root.getAsJsonObject().get("" + appid).getAsJsonObject();
-			if (!gameObj.get("success").getAsBoolean()) {
-				System.out.println(appid + " - Not a game");
-				return result;
-			}
-			JsonObject data = gameObj.get("data").getAsJsonObject();
-
-			String title = data.get("name").getAsString();
-			result.add(getTitleString(appid, title));
-			System.out.println("Adding game: " + appid + " - " + title);		//DEBUG
-			
-			String type = data.get("type").getAsString();
-			result.add(getTypeString(appid, type));
-			
-			if(data.get("metacritic") != null) {
-				int score = data.get("metacritic").getAsJsonObject().get("score").getAsInt();
-				result.add(getMetaScoreString(appid, score));
-			}
-			
-			if(data.get("categories") != null) {
-				JsonArray categories = data.get("categories").getAsJsonArray();
-				String category;
-				for(int i = 0; i < categories.size(); i++) {
-					category = categories.get(i).getAsJsonObject().get("description").getAsString();
-					result.add(getCategoryString(appid, category));
-				}
-			}
-			if(type.equals("game")) {
-				for(String tag : GetTagsForGame(appid)) {
-					result.add(getTagString(appid, tag));
-				}
+			result = fetcher.fetch("appdetails", gameDataUrl + appid, is -> SteamJsonParser.parseGameData(
+					new InputStreamReader(is, StandardCharsets.UTF_8), appid));
+		} catch (HttpStatusException e) {
+			if (!isMissing(e))
+				throw e;
+			logger.warn("{} - {}", appid, e.getMessage());
+			return new ArrayList<>();
+		}
+		if (result.isEmpty()) {
+			logger.debug("{} - Not a game", appid);
+			return result;
+		}
+		String title = null;
+		String type = null;
+		for (GameTriple triple : result) {
+			if (triple.getProperty() == GameProperty.TITLE)
+				title = triple.getValue();
+			else if (triple.getProperty() == GameProperty.TYPE)
+				type = triple.getValue();
+		}
+		logger.debug("Adding game: {} - {}", appid, title);
+		
+		if("game".equals(type)) {
+			for(String tag : fetchTags(appid)) {
+				result.add(new GameTriple(appid, GameProperty.TAG, tag));
 			}
-
-		} catch (Exception e) {
-			e.printStackTrace();
 		}
 		return result;
 	}
+	
 	/**
 	 * Returns a String list containing all tags connected to the game appId.
 	 * This data is not available on an Steam api, so the user friendly game page
-	 * is opened, and a built in regex expression is used to extract the tags from the webpage.
+	 * is opened, and the tags are extracted from its html source.
 	 * <a href='https://store.steampowered.com/app/570'>Example page</a> 
 	 * 
 	 * @param appid The appId of the game for which the tags will be downloaded.
-	 * @return A String list containing all the tags.
+	 * @return A String list containing all the tags, empty if the download failed.
+	 * @see StoreTagExtractor
 	 */
 	public List<String> GetTagsForGame(int appid){
-		List<String> result = new ArrayList<>();
-		
 		try {
-			Pattern pattern = Pattern.compile(tagExtractRegex);
-			URL url = new URL(individualGamePageUrl + appid);
-			InputStream is = url.openStream();
-			BufferedReader br = new BufferedReader(new InputStreamReader(is));
-			
-			StringBuilder sb = new StringBuilder();
-			String line = null;
-			while ((line = br.readLine()) != null) {
-				sb.append(StringEscapeUtils.unescapeHtml4(line).trim());
-	        }
-			String page = sb.toString();
-			Matcher matcher = pattern.matcher(page);
-			while(matcher.find()) {
-				String tag = matcher.group(2);
-				result.add(tag);
-			}
-			
-		}catch (Exception e) {
-			e.printStackTrace();
+			return fetchTags(appid);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.error("Downloading the tags of game " + appid + " failed", e);
 		}
-		
-		return result;
+		return new ArrayList<>();
 	}
-	
-	private String getTitleString(int appid, String title) {
-		return "" + appid + DatabaseManager.separator + DatabaseManager.title + DatabaseManager.separator + title;
-	}
-	private String getMetaScoreString(int appid, int score) {
-		return "" + appid + DatabaseManager.separator + DatabaseManager.metaScore + DatabaseManager.separator + score;
+
+	private List<String> fetchTags(int appid) throws IOException, InterruptedException {
+		try {
+			return fetcher.fetch("storepage", gamePageUrl + appid, is -> StoreTagExtractor.extract(
+					new InputStreamReader(is, StandardCharsets.UTF_8)));
+		} catch (HttpStatusException e) {
+			if (!isMissing(e))
+				throw e;
+			logger.warn("{} - {}", appid, e.getMessage());
+			return new ArrayList<>();
+		}
 	}
-	private String getCategoryString(int appid, String category) {
-		return "" + appid + DatabaseManager.separator + DatabaseManager.category + DatabaseManager.separator + category;
+
+	/**
+	 * @return True if Steam answered that the page does not exist, which is the data of the app, not a failure.
+	 */
+	private static boolean isMissing(HttpStatusException e) {
+		return e.getStatus() == 404 || e.getStatus() == 410;
 	}
-	private String getTypeString(int appid, String type) {
-		return "" + appid + DatabaseManager.separator + DatabaseManager.type + DatabaseManager.separator + type;
+	
+	/**
+	 * Closes the fetcher and its pooled connections. Call it when the download has ended.
+	 */
+	@Override
+	public void close() {
+		try {
+			fetcher.close();
+		} catch (IOException e) {
+			logger.warn("Closing the http client failed", e);
+		}
 	}
-	private String getTagString(int appid, String tag) {
-		return "" + appid + DatabaseManager.separator + DatabaseManager.tag + DatabaseManager.separator + tag;
+
+	/**
+	 * @return The fetcher sending the requests, holds the latency of every endpoint.
+	 */
+	public HttpFetcher getFetcher() {
+		return fetcher;
 	}
 }
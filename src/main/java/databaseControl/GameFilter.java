@@ -0,0 +1,113 @@
+package databaseControl;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Restricts a search to games with a metacritic score in a range, every one of a set
+ * of categories and a type, e.g. Co-op games with a metaScore above 80.
+ * Evaluated on the secondary indexes of the TagIndex, see TagIndex.filter.
+ * A new filter lets every game through, each setter narrows it.
+ */
+public final class GameFilter {
+
+	private int minMetaScore = Integer.MIN_VALUE;
+	private int maxMetaScore = Integer.MAX_VALUE;
+	private final Set<String> categories = new LinkedHashSet<>();
+	private String type;
+
+	/**
+	 * Only games with a metacritic score of at least min pass, games without a score are left out.
+	 *
+	 * @param min The lowest score let through, inclusive.
+	 * @return This filter.
+	 */
+	public GameFilter setMinMetaScore(int min) {
+		minMetaScore = min;
+		return this;
+	}
+
+	/**
+	 * Only games with a metacritic score of at most max pass, games without a score are left out.
+	 *
+	 * @param max The highest score let through, inclusive.
+	 * @return This filter.
+	 */
+	public GameFilter setMaxMetaScore(int max) {
+		maxMetaScore = max;
+		return this;
+	}
+
+	/**
+	 * Only games having the category pass. Can be called several times, a game must have every category.
+	 *
+	 * @param category A category as stored in the database, e.g. "Co-op", case insensitive.
+	 * @return This filter.
+	 */
+	public GameFilter addCategory(String category) {
+		categories.add(category.trim());
+		return this;
+	}
+
+	/**
+	 * Only apps of the given type pass.
+	 *
+	 * @param type The type as stored in the database, e.g. "game" or "dlc", case insensitive.
+	 * @return This filter.
+	 */
+	public GameFilter setType(String type) {
+		this.type = type == null ? null : type.trim();
+		return this;
+	}
+
+	public int getMinMetaScore() {
+		return minMetaScore;
+	}
+
+	public int getMaxMetaScore() {
+		return maxMetaScore;
+	}
+
+	/**
+	 * @return True if a min or max metacritic score is set.
+	 */
+	public boolean hasMetaScoreRange() {
+		return minMetaScore != Integer.MIN_VALUE || maxMetaScore != Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @return The categories a game must have, unmodifiable.
+	 */
+	public Set<String> getCategories() {
+		return Collections.unmodifiableSet(categories);
+	}
+
+	/**
+	 * @return The type a game must have, null if any type passes.
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return True if the filter lets every game through.
+	 */
+	public boolean isEmpty() {
+		return !hasMetaScoreRange() && categories.isEmpty() && type == null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		if (minMetaScore != Integer.MIN_VALUE)
+			sb.append("metaScore >= ").append(minMetaScore).append(", ");
+		if (maxMetaScore != Integer.MAX_VALUE)
+			sb.append("metaScore <= ").append(maxMetaScore).append(", ");
+		for (String category : categories)
+			sb.append("category ").append(category).append(", ");
+		if (type != null)
+			sb.append("type ").append(type).append(", ");
+		return sb.length() == 0 ? "no filter" : sb.substring(0, sb.length() - 2);
+	}
+}
@@ -0,0 +1,26 @@
+package databaseControl;
+
+/**
+ * The properties of a game stored in the database.
+ * Each one is saved as the predicate namespace:localName.
+ */
+public enum GameProperty {
+	TITLE(DatabaseManager.title),
+	CATEGORY(DatabaseManager.category),
+	META_SCORE(DatabaseManager.metaScore),
+	TYPE(DatabaseManager.type),
+	TAG(DatabaseManager.tag);
+
+	private final String localName;
+
+	private GameProperty(String localName) {
+		this.localName = localName;
+	}
+
+	/**
+	 * @return The name of the property used in the database, e.g. "title".
+	 */
+	public String getLocalName() {
+		return localName;
+	}
+}
@@ -0,0 +1,47 @@
+package databaseControl;
+
+/**
+ * A game found by a search, identified by its appId.
+ */
+public final class GameResult {
+
+	private final int appid;
+	private final String title;
+
+	/**
+	 * @param appid The appId of the game.
+	 * @param title The title of the game.
+	 */
+	public GameResult(int appid, String title) {
+		this.appid = appid;
+		this.title = title;
+	}
+
+	public int getAppid() {
+		return appid;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof GameResult))
+			return false;
+		GameResult other = (GameResult) obj;
+		return appid == other.appid && title.equals(other.title);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * appid + title.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return appid + " " + title;
+	}
+}
@@ -0,0 +1,55 @@
+package databaseControl;
+
+/**
+ * A single property of a game, stored in the database as the rdf triplet
+ * namespace:appid namespace:property "value".
+ */
+public final class GameTriple {
+
+	private final int appid;
+	private final GameProperty property;
+	private final String value;
+
+	/**
+	 * @param appid The appId of the game, the subject of the triplet.
+	 * @param property The property of the game, the predicate of the triplet.
+	 * @param value The value of the property, stored as a literal. May contain any character.
+	 */
+	public GameTriple(int appid, GameProperty property, String value) {
+		this.appid = appid;
+		this.property = property;
+		this.value = value;
+	}
+
+	public int getAppid() {
+		return appid;
+	}
+
+	public GameProperty getProperty() {
+		return property;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof GameTriple))
+			return false;
+		GameTriple other = (GameTriple) obj;
+		return appid == other.appid && property == other.property && value.equals(other.value);
+	}
+
+	@Override
+	public int hashCode() {
+		return (31 * appid + property.hashCode()) * 31 + value.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return appid + " " + property.getLocalName() + " " + value;
+	}
+}
@@ -0,0 +1,85 @@
+package databaseControl;
+
+import java.util.concurrent.TimeUnit;
+
+public class LoadStatistics {
+
+	private long statements;
+	private long batches;
+	private long elapsedNanos;
+	private boolean failed;
+
+	/**
+	 * Adds a committed batch to the statistics.
+	 * 
+	 * @param size Number of statements in the batch.
+	 * @param nanos Time spent building and committing the batch.
+	 */
+	public void addBatch(long size, long nanos) {
+		statements += size;
+		batches++;
+		elapsedNanos += nanos;
+	}
+
+	/**
+	 * Marks the load as failed, the statements after the committed batches were not saved.
+	 */
+	public void markFailed() {
+		failed = true;
+	}
+
+	/**
+	 * Adds the numbers of another load to these statistics.
+	 * 
+	 * @param other Statistics of another load.
+	 */
+	public void add(LoadStatistics other) {
+		statements += other.statements;
+		batches += other.batches;
+		elapsedNanos += other.elapsedNanos;
+		failed |= other.failed;
+	}
+
+	/**
+	 * @return True if some of the data could not be saved.
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return Number of statements committed.
+	 */
+	public long getStatements() {
+		return statements;
+	}
+
+	/**
+	 * @return Number of batches committed.
+	 */
+	public long getBatches() {
+		return batches;
+	}
+
+	/**
+	 * @return Time spent loading, in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	/**
+	 * @return Committed statements per second, 0 if nothing was loaded.
+	 */
+	public double getStatementsPerSecond() {
+		if (elapsedNanos == 0)
+			return 0;
+		return statements * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d statements in %d batches, %d ms, %.1f statements/sec%s",
+				statements, batches, getElapsedMillis(), getStatementsPerSecond(), failed ? ", FAILED" : "");
+	}
+}
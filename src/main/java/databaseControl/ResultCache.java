@@ -0,0 +1,149 @@
+package databaseControl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, thread-safe cache of search results. The least recently used entry
+ * is evicted when the cache is full, and entries older than the ttl are reloaded.
+ * invalidateAll() drops every entry, results that were being loaded while it was
+ * called are returned to their caller but not stored.
+ *
+ * @param <K> Type of the key, e.g. the searched tag.
+ * @param <V> Type of the cached result, should not be modified after it is cached.
+ */
+public class ResultCache<K, V> {
+
+	/**
+	 * Default max number of entries of a cache. Default value is 1000.
+	 */
+	public static int DefaultMaxEntries = 1000;
+	/**
+	 * Default time after which a cached result is reloaded, in milliseconds.
+	 * Default value is 10 minutes.
+	 */
+	public static long DefaultTtlMillis = 10 * 60 * 1000;
+
+	private static final class Entry<V> {
+		final V value;
+		final long expires;
+
+		Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	private final int maxEntries;
+	private final long ttlMillis;
+	private final LinkedHashMap<K, Entry<V>> entries;
+	private long generation;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long expirations;
+	private long invalidations;
+
+	/**
+	 * Creates a cache with DefaultMaxEntries and DefaultTtlMillis.
+	 */
+	public ResultCache() {
+		this(DefaultMaxEntries, DefaultTtlMillis);
+	}
+
+	/**
+	 * @param maxEntries Max number of results stored, 0 disables the cache.
+	 * @param ttlMillis Time after which a result is reloaded, 0 or less means never.
+	 */
+	public ResultCache(int maxEntries, long ttlMillis) {
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttlMillis;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the cached result for the key, or calls the loader and caches its result.
+	 * The loader is called without holding the lock, so concurrent misses for the same
+	 * key may load it more than once. If the loader throws, nothing is cached.
+	 * 
+	 * @param key The key of the result.
+	 * @param loader Creates the result on a miss.
+	 * @return The cached or loaded result.
+	 */
+	public V get(K key, Supplier<V> loader) {
+		long loadGeneration;
+		synchronized (this) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				if (ttlMillis <= 0 || entry.expires > System.currentTimeMillis()) {
+					hits++;
+					return entry.value;
+				}
+				entries.remove(key);
+				expirations++;
+			}
+			misses++;
+			loadGeneration = generation;
+		}
+
+		V value = loader.get();
+
+		synchronized (this) {
+			if (maxEntries > 0 && loadGeneration == generation) {
+				entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+				evictOverflow();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Drops every cached result, e.g. because the data they were computed from changed.
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+		generation++;
+		invalidations++;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized long getExpirations() {
+		return expirations;
+	}
+
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("size %d/%d, hits %d, misses %d, evictions %d, expirations %d, invalidations %d",
+				entries.size(), maxEntries, hits, misses, evictions, expirations, invalidations);
+	}
+
+	private void evictOverflow() {
+		Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+		while (entries.size() > maxEntries && it.hasNext()) {
+			it.next();
+			it.remove();
+			evictions++;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package databaseControl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Streaming parsers for the json responses of the Steam api.
+ * Only the fields that are stored are read, everything else is skipped
+ * without building a json tree.
+ */
+public class SteamJsonParser {
+
+	private SteamJsonParser() {
+	}
+
+	/**
+	 * Reads the appIds from a GetAppList response:
+	 * {"applist": {"apps": {"app": [{"appid": 10, "name": "..."}, ...]}}}
+	 * 
+	 * @param in The response body.
+	 * @return The appIds, in the order of the response.
+	 * @throws IOException If the response cannot be read or is not in the expected format.
+	 */
+	public static int[] parseAppids(Reader in) throws IOException {
+		int[] result = new int[1024];
+		int size = 0;
+		try (JsonReader reader = new JsonReader(in)) {
+			reader.beginObject();
+			if (!skipTo(reader, "applist"))
+				return new int[0];
+			reader.beginObject();
+			if (!skipTo(reader, "apps"))
+				return new int[0];
+			reader.beginObject();
+			if (!skipTo(reader, "app"))
+				return new int[0];
+
+			reader.beginArray();
+			while (reader.hasNext()) {
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if (reader.nextName().equals("appid")) {
+						if (size == result.length)
+							result = Arrays.copyOf(result, size * 2);
+						result[size++] = reader.nextInt();
+					} else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Reads the stored properties of a game from an appdetails response:
+	 * {"570": {"success": true, "data": {"type": "game", "name": "...", ...}}}
+	 * The title, type, metacritic score and category descriptions are returned,
+	 * tags are not part of the response.
+	 * 
+	 * @param in The response body.
+	 * @param appid The appId the details were requested for.
+	 * @return The triples of the game, empty if Steam has no data for the appId.
+	 * @throws IOException If the response cannot be read or is not in the expected format.
+	 */
+	public static List<GameTriple> parseGameData(Reader in, int appid) throws IOException {
+		List<GameTriple> result = new ArrayList<>();
+		try (JsonReader reader = new JsonReader(in)) {
+			reader.beginObject();
+			if (!skipTo(reader, Integer.toString(appid)))
+				return result;
+			reader.beginObject();
+			boolean success = false;
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals("success")) {
+					success = reader.nextBoolean();
+				} else if (name.equals("data") && success) {
+					readData(reader, appid, result);
+				} else {
+					reader.skipValue();
+				}
+			}
+		}
+		return result;
+	}
+
+	private static void readData(JsonReader reader, int appid, List<GameTriple> result) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "name":
+					result.add(new GameTriple(appid, GameProperty.TITLE, reader.nextString()));
+					break;
+				case "type":
+					result.add(new GameTriple(appid, GameProperty.TYPE, reader.nextString()));
+					break;
+				case "metacritic":
+					readMetacritic(reader, appid, result);
+					break;
+				case "categories":
+					readCategories(reader, appid, result);
+					break;
+				default:
+					reader.skipValue();
+					break;
+			}
+		}
+		reader.endObject();
+	}
+
+	private static void readMetacritic(JsonReader reader, int appid, List<GameTriple> result) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("score"))
+				result.add(new GameTriple(appid, GameProperty.META_SCORE, Integer.toString(reader.nextInt())));
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+	}
+
+	private static void readCategories(JsonReader reader, int appid, List<GameTriple> result) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals("description"))
+					result.add(new GameTriple(appid, GameProperty.CATEGORY, reader.nextString()));
+				else
+					reader.skipValue();
+			}
+			reader.endObject();
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * Skips the fields of the current object until the one with the given name.
+	 * 
+	 * @return True if the field was found, the reader is then before its value.
+	 */
+	private static boolean skipTo(JsonReader reader, String name) throws IOException {
+		while (reader.hasNext() && reader.peek() == JsonToken.NAME) {
+			if (reader.nextName().equals(name))
+				return true;
+			reader.skipValue();
+		}
+		return false;
+	}
+}
@@ -0,0 +1,45 @@
+package databaseControl;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * The kind of rdf4j repository used by DatabaseManager.
+ */
+public enum StoreBackend {
+	/**
+	 * The "steamgames" repository of an rdf4j server running on localhost:8080.
+	 */
+	HTTP,
+	/**
+	 * An in-process memory store, persisted to the data directory if one is set.
+	 */
+	MEMORY,
+	/**
+	 * An in-process native store in the data directory.
+	 */
+	NATIVE;
+
+	/**
+	 * Reads a backend name, e.g. the value of a system property, case insensitively.
+	 * An unknown name is logged with the allowed values and the fallback is used,
+	 * so a typo does not stop the program before it starts.
+	 * 
+	 * @param name The name of the backend, null for the fallback.
+	 * @param fallback Returned if the name is null or unknown.
+	 * @return The backend with the name, or the fallback.
+	 */
+	public static StoreBackend parse(String name, StoreBackend fallback) {
+		if (name == null || name.trim().isEmpty())
+			return fallback;
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			LoggerFactory.getLogger(StoreBackend.class).warn("Unknown store backend {}, using {}. Allowed values: {}", name,
+					fallback.name().toLowerCase(Locale.ROOT), Arrays.toString(values()).toLowerCase(Locale.ROOT));
+			return fallback;
+		}
+	}
+}
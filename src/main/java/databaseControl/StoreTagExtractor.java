@@ -0,0 +1,72 @@
+package databaseControl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+/**
+ * Extracts the user tags from the html source of a Steam store page.
+ * The page is read line by line, only the lines of the tag block
+ * (the div with the "glance_tags popular_tags" class) are kept, and reading
+ * stops at the end of the block, so the rest of the page is never downloaded.
+ * Only the text of the tags is unescaped.
+ */
+public class StoreTagExtractor {
+
+	private static final String blockStart = "class=\"glance_tags popular_tags\"";
+	private static final String blockEnd = "</div>";
+	private static final Pattern tagPattern = Pattern.compile(
+			"<a href=\"https://store\\.steampowered\\.com/tags/[^\"]*\" class=\"app_tag\"[^>]*>([^<]*)</a>");
+
+	private StoreTagExtractor() {
+	}
+
+	/**
+	 * Reads the tags of a store page, in the order they appear on the page.
+	 * 
+	 * @param in The html source of the page, it is not closed.
+	 * @return The tags, empty if the page has no tag block.
+	 * @throws IOException If the page cannot be read.
+	 */
+	public static List<String> extract(Reader in) throws IOException {
+		BufferedReader br = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+		StringBuilder block = null;
+		String line;
+		while ((line = br.readLine()) != null) {
+			int from = 0;
+			if (block == null) {
+				int start = line.indexOf(blockStart);
+				if (start < 0)
+					continue;
+				block = new StringBuilder();
+				from = start + blockStart.length();
+			}
+			int end = line.indexOf(blockEnd, from);
+			if (end >= 0) {
+				block.append(line, from, end);
+				break;
+			}
+			block.append(line, from, line.length()).append('\n');
+		}
+		return block == null ? new ArrayList<>() : parseBlock(block);
+	}
+
+	private static List<String> parseBlock(CharSequence block) {
+		List<String> result = new ArrayList<>();
+		Matcher matcher = tagPattern.matcher(block);
+		while (matcher.find()) {
+			String tag = matcher.group(1).trim();
+			if (tag.indexOf('&') >= 0)
+				tag = StringEscapeUtils.unescapeHtml4(tag);
+			if (!tag.isEmpty())
+				result.add(tag);
+		}
+		return result;
+	}
+}
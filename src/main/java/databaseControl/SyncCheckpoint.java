@@ -0,0 +1,159 @@
+package databaseControl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Progress of a catalog sync, kept in a local text file so an interrupted sync
+ * can continue where it stopped. The first line holds the refresh cursor
+ * (cursor=appid), lines starting with empty= the appIds Steam has no data for,
+ * every other line an appId whose data is already committed.
+ * The empty appIds are kept when a sync finishes, so they are not downloaded as new games again.
+ */
+public class SyncCheckpoint implements AutoCloseable {
+
+	private static final String cursorPrefix = "cursor=";
+	private static final String emptyPrefix = "empty=";
+
+	private final File file;
+	private final Set<Integer> completed = new HashSet<>();
+	private final Set<Integer> empty = new HashSet<>();
+	private int refreshCursor;
+	private BufferedWriter writer;
+
+	private SyncCheckpoint(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Reads the checkpoint file, or starts an empty checkpoint if it does not exist.
+	 * 
+	 * @param file The checkpoint file.
+	 * @return The checkpoint.
+	 * @throws IOException If the file exists but cannot be read.
+	 */
+	public static SyncCheckpoint open(File file) throws IOException {
+		SyncCheckpoint checkpoint = new SyncCheckpoint(file);
+		if (file.exists()) {
+			try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+				String line;
+				while ((line = br.readLine()) != null) {
+					line = line.trim();
+					if (line.isEmpty())
+						continue;
+					if (line.startsWith(cursorPrefix))
+						checkpoint.refreshCursor = Integer.parseInt(line.substring(cursorPrefix.length()));
+					else if (line.startsWith(emptyPrefix))
+						checkpoint.empty.add(Integer.parseInt(line.substring(emptyPrefix.length())));
+					else
+						checkpoint.completed.add(Integer.parseInt(line));
+				}
+			}
+		} else {
+			checkpoint.rewrite();
+		}
+		checkpoint.writer = new BufferedWriter(new FileWriter(file, true));
+		return checkpoint;
+	}
+
+	/**
+	 * @return The appIds already committed by the interrupted sync, empty if the last sync finished.
+	 */
+	public Set<Integer> getCompleted() {
+		return completed;
+	}
+
+	/**
+	 * @return The appIds Steam answered without data, e.g. success=false or 404, by this or an earlier sync.
+	 */
+	public Set<Integer> getEmpty() {
+		return empty;
+	}
+
+	/**
+	 * @return The largest appId refreshed by the last finished sync, 0 to start from the beginning.
+	 */
+	public int getRefreshCursor() {
+		return refreshCursor;
+	}
+
+	/**
+	 * Records games as committed, the file is flushed before returning.
+	 * 
+	 * @param appids The appIds of the committed games.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void markCompleted(List<Integer> appids) throws IOException {
+		for (int appid : appids) {
+			completed.add(appid);
+			writer.write(Integer.toString(appid));
+			writer.newLine();
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Records appIds Steam has no data for, the file is flushed before returning.
+	 * 
+	 * @param appids The appIds answered without data.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void markEmpty(Collection<Integer> appids) throws IOException {
+		for (int appid : appids) {
+			if (empty.add(appid)) {
+				writer.write(emptyPrefix + appid);
+				writer.newLine();
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Removes appIds from the empty ones, e.g. because they are stored now or left the app list.
+	 * Written to the file by finish.
+	 * 
+	 * @param appids The appIds that are no longer empty.
+	 */
+	public void forgetEmpty(Collection<Integer> appids) {
+		empty.removeAll(appids);
+	}
+
+	/**
+	 * Marks the sync as finished: the list of committed games is cleared,
+	 * only the refresh cursor and the empty appIds are kept for the next sync.
+	 * 
+	 * @param newRefreshCursor The largest appId refreshed by this sync.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void finish(int newRefreshCursor) throws IOException {
+		writer.close();
+		completed.clear();
+		refreshCursor = newRefreshCursor;
+		rewrite();
+		writer = new BufferedWriter(new FileWriter(file, true));
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	private void rewrite() throws IOException {
+		try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+			bw.write(cursorPrefix + refreshCursor);
+			bw.newLine();
+			for (int appid : empty) {
+				bw.write(emptyPrefix + appid);
+				bw.newLine();
+			}
+		}
+	}
+}
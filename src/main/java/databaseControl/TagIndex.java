@@ -0,0 +1,289 @@
+package databaseControl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory inverted index from every tag to the appids of the games having it,
+ * stored as compressed Roaring bitmaps, so unions, intersections and differences of
+ * tags take microseconds. Built from the database by DatabaseManager.getTagIndex,
+ * it does not change afterwards, the manager builds a new one when the data is old.
+ * 
+ * Tags are looked up by their ontology name: spaces are replaced with underscores,
+ * so "Early Access" in the database is found as "Early_Access".
+ * 
+ * The index also has secondary indexes for filtering the results of a search,
+ * see GameFilter: a bitmap of the games of every category and type, looked up case insensitively,
+ * and a map of metacritic scores, sorted by score, to the bitmap of the games with that score,
+ * so a score range is the union of the bitmaps of the scores in it.
+ */
+public final class TagIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(TagIndex.class);
+
+	private final Map<String, RoaringBitmap> postings;
+	private final Map<Integer, String> titles;
+	private final Map<Integer, Integer> metaScores;
+	private final NavigableMap<Integer, RoaringBitmap> metaScoreIndex = new TreeMap<>();
+	private final Map<String, RoaringBitmap> categories;
+	private final Map<String, RoaringBitmap> types;
+	private final RoaringBitmap games;
+	private long builtAt;
+	private long buildMillis;
+
+	private TagIndex(Map<String, RoaringBitmap> postings, Map<Integer, String> titles, Map<Integer, Integer> metaScores,
+			Map<String, RoaringBitmap> categories, Map<String, RoaringBitmap> types) {
+		this.postings = postings;
+		this.titles = titles;
+		this.metaScores = metaScores;
+		this.categories = categories;
+		this.types = types;
+		this.games = new RoaringBitmap();
+		for (int appid : titles.keySet())
+			games.add(appid);
+		games.runOptimize();
+		for (Map.Entry<Integer, Integer> score : metaScores.entrySet())
+			metaScoreIndex.computeIfAbsent(score.getValue(), s -> new RoaringBitmap()).add(score.getKey());
+		for (RoaringBitmap posting : postings.values())
+			posting.runOptimize();
+		for (RoaringBitmap posting : categories.values())
+			posting.runOptimize();
+		for (RoaringBitmap posting : types.values())
+			posting.runOptimize();
+		for (RoaringBitmap posting : metaScoreIndex.values())
+			posting.runOptimize();
+	}
+
+	/**
+	 * Reads the tags, titles, metacritic scores, categories and types of every game from the database.
+	 * Games without a title are left out, the same as in the SPARQL searches.
+	 * 
+	 * @param dm The database to read.
+	 * @return The index of the current content of the database.
+	 */
+	static TagIndex build(DatabaseManager dm) {
+		long start = System.nanoTime();
+		Map<Integer, String> titles = new HashMap<>();
+		dm.forEachValue(GameProperty.TITLE, titles::put);
+		Map<String, RoaringBitmap> postings = new HashMap<>();
+		dm.forEachValue(GameProperty.TAG, (appid, tag) -> {
+			if (titles.containsKey(appid))
+				postings.computeIfAbsent(normalize(tag), t -> new RoaringBitmap()).add(appid);
+		});
+		Map<Integer, Integer> metaScores = new HashMap<>();
+		dm.forEachValue(GameProperty.META_SCORE, (appid, score) -> {
+			if (!titles.containsKey(appid))
+				return;
+			try {
+				metaScores.put(appid, Integer.parseInt(score));
+			} catch (NumberFormatException e) {
+				logger.warn("Invalid metaScore of {}: {}", appid, score);
+			}
+		});
+		Map<String, RoaringBitmap> categories = new HashMap<>();
+		dm.forEachValue(GameProperty.CATEGORY, (appid, category) -> {
+			if (titles.containsKey(appid))
+				categories.computeIfAbsent(normalizeValue(category), c -> new RoaringBitmap()).add(appid);
+		});
+		Map<String, RoaringBitmap> types = new HashMap<>();
+		dm.forEachValue(GameProperty.TYPE, (appid, type) -> {
+			if (titles.containsKey(appid))
+				types.computeIfAbsent(normalizeValue(type), t -> new RoaringBitmap()).add(appid);
+		});
+		TagIndex index = new TagIndex(postings, titles, metaScores, categories, types);
+		index.builtAt = System.currentTimeMillis();
+		index.buildMillis = (System.nanoTime() - start) / 1000000;
+		return index;
+	}
+
+	/**
+	 * @param tag A tag as stored in the database or as named in the ontology.
+	 * @return The name the tag is indexed under.
+	 */
+	public static String normalize(String tag) {
+		return tag.trim().replace(' ', '_');
+	}
+
+	private static String normalizeValue(String value) {
+		return value.trim().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param tag The tag, normalized by this method.
+	 * @return The appids of the games with the tag, empty if no game has it.
+	 * 		   The bitmap is shared, it must not be modified.
+	 */
+	public RoaringBitmap getGames(String tag) {
+		RoaringBitmap posting = postings.get(normalize(tag));
+		return posting != null ? posting : new RoaringBitmap();
+	}
+
+	/**
+	 * @return The appids of every indexed game. The bitmap is shared, it must not be modified.
+	 */
+	public RoaringBitmap getAllGames() {
+		return games;
+	}
+
+	/**
+	 * @return The normalized name of every tag in the index.
+	 */
+	public Set<String> getTags() {
+		return Collections.unmodifiableSet(postings.keySet());
+	}
+
+	/**
+	 * @param appid An indexed game.
+	 * @return The title of the game, null if it is not indexed.
+	 */
+	public String getTitle(int appid) {
+		return titles.get(appid);
+	}
+
+	/**
+	 * @param appid An indexed game.
+	 * @return The metacritic score of the game, -1 if it has none.
+	 */
+	public int getMetaScore(int appid) {
+		Integer score = metaScores.get(appid);
+		return score == null ? -1 : score;
+	}
+
+	/**
+	 * @param category A category, case insensitive.
+	 * @return The appids of the games with the category, empty if no game has it.
+	 * 		   The bitmap is shared, it must not be modified.
+	 */
+	public RoaringBitmap getGamesWithCategory(String category) {
+		RoaringBitmap posting = categories.get(normalizeValue(category));
+		return posting != null ? posting : new RoaringBitmap();
+	}
+
+	/**
+	 * @param type A type, e.g. "game", case insensitive.
+	 * @return The appids of the apps of the type, empty if there is none.
+	 * 		   The bitmap is shared, it must not be modified.
+	 */
+	public RoaringBitmap getGamesOfType(String type) {
+		RoaringBitmap posting = types.get(normalizeValue(type));
+		return posting != null ? posting : new RoaringBitmap();
+	}
+
+	/**
+	 * Looks up the games with a metacritic score in the range in the sorted score index,
+	 * without reading the score of every game.
+	 * 
+	 * @param min The lowest score, inclusive.
+	 * @param max The highest score, inclusive.
+	 * @return The appids of the games with a score in the range, a new bitmap.
+	 */
+	public RoaringBitmap getGamesByMetaScore(int min, int max) {
+		if (min > max)
+			return new RoaringBitmap();
+		return FastAggregation.or(metaScoreIndex.subMap(min, true, max, true).values().iterator());
+	}
+
+	/**
+	 * @return The normalized name of every category in the index.
+	 */
+	public Set<String> getCategories() {
+		return Collections.unmodifiableSet(categories.keySet());
+	}
+
+	/**
+	 * Keeps the games passing the filter. The bitmaps of the filter conditions are intersected
+	 * with the games, the games themselves are not looked at one by one.
+	 * 
+	 * @param games Appids of indexed games, not modified.
+	 * @param filter The filter, null or an empty filter lets every game through.
+	 * @return The appids of the games passing the filter, a new bitmap.
+	 */
+	public RoaringBitmap filter(RoaringBitmap games, GameFilter filter) {
+		if (filter == null || filter.isEmpty())
+			return games.clone();
+		List<RoaringBitmap> conditions = new ArrayList<>();
+		conditions.add(games);
+		if (filter.hasMetaScoreRange())
+			conditions.add(getGamesByMetaScore(filter.getMinMetaScore(), filter.getMaxMetaScore()));
+		for (String category : filter.getCategories())
+			conditions.add(getGamesWithCategory(category));
+		if (filter.getType() != null)
+			conditions.add(getGamesOfType(filter.getType()));
+		// smallest first, so the intersection shrinks as early as possible
+		conditions.sort((a, b) -> Integer.compare(a.getCardinality(), b.getCardinality()));
+		RoaringBitmap result = conditions.get(0).clone();
+		for (int i = 1; i < conditions.size() && !result.isEmpty(); i++)
+			result.and(conditions.get(i));
+		return result;
+	}
+
+	/**
+	 * @param appids Appids of indexed games.
+	 * @return The appid and title of the games, in ascending appid order.
+	 */
+	public List<GameResult> toResults(RoaringBitmap appids) {
+		List<GameResult> result = new ArrayList<>(appids.getCardinality());
+		IntIterator it = appids.getIntIterator();
+		while (it.hasNext()) {
+			int appid = it.next();
+			result.add(new GameResult(appid, titles.get(appid)));
+		}
+		return result;
+	}
+
+	/**
+	 * @return Number of indexed games.
+	 */
+	public int size() {
+		return titles.size();
+	}
+
+	/**
+	 * @return The System.currentTimeMillis when the index was read from the database.
+	 */
+	public long getBuiltAt() {
+		return builtAt;
+	}
+
+	/**
+	 * @return The time it took to read the database and build the index, in ms.
+	 */
+	public long getBuildMillis() {
+		return buildMillis;
+	}
+
+	/**
+	 * @return The size of every bitmap of the index, in bytes.
+	 */
+	public long getSizeInBytes() {
+		long bytes = games.getSizeInBytes();
+		for (RoaringBitmap posting : postings.values())
+			bytes += posting.getSizeInBytes();
+		for (RoaringBitmap posting : categories.values())
+			bytes += posting.getSizeInBytes();
+		for (RoaringBitmap posting : types.values())
+			bytes += posting.getSizeInBytes();
+		for (RoaringBitmap posting : metaScoreIndex.values())
+			bytes += posting.getSizeInBytes();
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d games, %d tags, %d categories, %d scores, %d KB of bitmaps", size(), postings.size(),
+				categories.size(), metaScores.size(), getSizeInBytes() / 1024);
+	}
+}
@@ -0,0 +1,44 @@
+package databaseControl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws ranks from 0 to size - 1, rank k with probability proportional to 1 / (k + 1)^exponent,
+ * so a few ranks are drawn very often and most of them rarely, like the tags of Steam games.
+ */
+final class ZipfDistribution {
+
+	private final double[] cumulative;
+
+	/**
+	 * @param size Number of ranks, at least 1.
+	 * @param exponent The skew of the distribution, 0 is uniform, around 1 is typical.
+	 */
+	ZipfDistribution(int size, double exponent) {
+		if (size < 1)
+			throw new IllegalArgumentException("Size must be at least 1: " + size);
+		cumulative = new double[size];
+		double sum = 0;
+		for (int k = 0; k < size; k++) {
+			sum += 1 / Math.pow(k + 1, exponent);
+			cumulative[k] = sum;
+		}
+		for (int k = 0; k < size; k++)
+			cumulative[k] /= sum;
+	}
+
+	/**
+	 * @param random The source of randomness.
+	 * @return A rank between 0 and size - 1.
+	 */
+	int next(Random random) {
+		int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		int rank = index >= 0 ? index : -index - 1;
+		return Math.min(rank, cumulative.length - 1);
+	}
+
+	int size() {
+		return cumulative.length;
+	}
+}
@@ -1,24 +1,50 @@
 package main;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+
+import com.codahale.metrics.Timer;
 
 import createOntology.OntologyClassCreator;
+import createOntology.OntologyGenerator;
 import createOntology.TagDownloader;
+import databaseControl.CatalogGenerator;
+import databaseControl.CatalogSync;
 import databaseControl.DatabaseManager;
+import databaseControl.GameDataPipeline;
 import databaseControl.GameDownloader;
+import databaseControl.GameTriple;
+import databaseControl.LoadStatistics;
+import databaseControl.StoreBackend;
+import metrics.Metrics;
+import searchServer.SearchServer;
+import semanticSearch.RankedResult;
+import semanticSearch.ResultPage;
 import semanticSearch.SemanticSearcher;
+import semanticSearch.TagQuery;
 
 public class Program {
 	private static String outputPath = "GamingOntology.owl";
+	private static String generatedOntologyPath = "GamingOntology_generated.owl";
+	private static SemanticSearcher searcher;
+	/**
+	 * Number of results printed at once by the search. Default value is 20.
+	 */
+	public static int PageSize = 20;
+	/**
+	 * If true Generate may reset the database of the rdf4j server and fill it with synthetic games,
+	 * replacing the crawled data. Can be set with the generate.http system property, default is false.
+	 */
+	public static boolean GenerateIntoHttp = Boolean.getBoolean("generate.http");
 	
 	/**
 	 * Main entry point of the program. The first parameter must
-	 * be either 'Search' 'CreateOntology' or 'FillDB'
+	 * be either 'Search' 'CreateOntology' 'CompileOntology' 'FillDB' 'SyncDB' 'Serve' 'Generate' 'Export' or 'Import'
 	 * 
 	 * @param args Command line arguments passed to the program.
 	 */
@@ -27,10 +53,11 @@ public class Program {
 			System.out.println("Program start");			
 			
 			if(args == null || args.length == 0) {
-				System.out.println("Missing function argument, possible values: (Search, CreateOntology, FillDB)");
+				System.out.println("Missing function argument, possible values: (Search, CreateOntology, CompileOntology, FillDB, SyncDB, Serve, Generate, Export, Import)");
 				System.exit(-1);
 			}
 			
+			Metrics.startReporting();
 			ProgramStart(args);
 			
 			//CreateOntology();
@@ -46,20 +73,44 @@ public class Program {
 			System.out.println("Finished c:");
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			Metrics.stopReporting();
 		}
 	}
 	
 	/**
 	 * Main control function, decides which function to run based on parameter.
 	 * 'Search' runs the main function of the project: expects a tag from user input, and searches for said tag.
-	 * Prints out the results in three columns: appId, title, url (where the game might be accessed)
-	 * Also prints out which games are found thanks to the ontology so we can feel good about ourselves.
+	 * Tags can be combined with AND, OR, NOT and parentheses, see TagQuery, input without them is one tag.
+	 * Prints the number of results, and the number found without the ontology so we can feel good about ourselves.
+	 * The results are ranked and printed PageSize at a time, best first, Enter shows the next page.
+	 * Each result has five columns: appId, title, score, match (direct, or ontology +distance
+	 * if it was found through a descendant of the tag) and url (where the game might be accessed).
 	 * 'CreateOntology' Asks the user for necessary input, and Creates an ontology containing all the tags,
 	 * but no additional information, ontology needs to be ordered manually.
+	 * The format of the file is chosen by its extension: .owl RDF/XML, .ofn functional syntax, .owx OWL/XML, .ttl Turtle.
+	 * 'CompileOntology' Classifies the ontology of the searcher and saves it to a compact snapshot next to it,
+	 *  searches started later load the snapshot instead of reasoning, until the ontology file is modified.
 	 * 'FillDB' Resets the database, downloads the set number of games from Steam,
 	 *  and fills the RDF database with this data.
+	 * 'SyncDB' Updates the RDF database without resetting it: deletes games removed from Steam,
+	 *  downloads new ones and refreshes a part of the stored ones. An interrupted sync continues
+	 *  where it stopped the next time it is run. AppIds Steam has no data for are remembered
+	 *  in the checkpoint file and only checked again by the refresh.
+	 * 'Serve' Starts an http server answering searches as json, e.g. /search?tag=Horror&expand=true
+	 *  The second element of args can be the port, default is SearchServer.Port.
+	 * 'Generate' Creates a synthetic tag hierarchy and synthetic games for load testing, see CatalogGenerator.
+	 *  Arguments: Generate [games=100000] [tags=3390] [roots=20] [branching=4] [triples file]
+	 *  The ontology is saved to GamingOntology_generated.owl, search it with -Dontology.path=GamingOntology_generated.owl
+	 *  The games are written to the triples file (N-Triples, .nt or .nt.gz) if given,
+	 *  otherwise the database is reset and filled with them. That needs an embedded store
+	 *  (-Dstore.backend=memory or native), the rdf4j server holding the crawled data is only
+	 *  overwritten with -Dgenerate.http=true.
+	 * 'Export' Writes the whole database to the file given as the second argument, streaming it:
+	 *  .nt N-Triples, .ttl Turtle or .brf binary RDF, compressed if the name ends with .gz, e.g. Export games.brf.gz
+	 * 'Import' Resets the database and loads a file written by Export, in transactions of DatabaseManager.BatchSize statements.
 	 * 
-	 * @param args String list, first element must be either 'Search' 'CreateOntology' or 'FillDB'
+	 * @param args String list, first element must be either 'Search' 'CreateOntology' 'CompileOntology' 'FillDB' 'SyncDB' 'Serve' 'Generate' 'Export' or 'Import'
 	 * @throws Exception If something breaks. Shouldnt really happen.
 	 */
 	public static void ProgramStart(String[] args) throws Exception {
@@ -68,45 +119,93 @@ public class Program {
 		switch (function) {
 			case "search": RunSearchFunction(); break;
 			case "createontology": CreateOntology(); break;
+			case "compileontology": SemanticSearcher.CompileOntology(); break;
 			case "filldb": PrintGameDataToDb(); break;
+			case "syncdb": SyncGameDataToDb(); break;
+			case "serve": RunSearchServer(args.length > 1 ? Integer.parseInt(args[1]) : SearchServer.Port); break;
+			case "generate": Generate(args); break;
+			case "export": ExportDb(requireFile(args)); break;
+			case "import": ImportDb(requireFile(args)); break;
 			default: System.out.println("Unknown keyword: " + function); break;
 		}
 	}
 	
 	private static void RunSearchFunction() throws IOException {
+		SemanticSearcher searcher = getSearcher();
+		searcher.warmUp();
+		System.out.println("Searcher ready, startup: " + searcher.getStartupMillis() + " ms, first query: "
+				+ searcher.getFirstQueryMillis() + " ms");
+		BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
 		while(true) {
-			BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-	        System.out.print("Enter tag to search for: ");
+	        System.out.print("Enter tag or query to search for (e.g. Horror AND Multiplayer NOT Early_Access): ");
 	        String term = br.readLine();
 			if(term.equals("-1")) {
 				break;
 			}
-			Search(term);
+			Search(term, br);
 		}
 	}
 	
-	private static void Search(String term) {
-		SemanticSearcher searcher = new SemanticSearcher(new DatabaseManager());
-		Set<String> results = searcher.Search(term);
-		System.out.println("Results:");
-		System.out.printf ("%-8s %-40s %s \n", "Appid", "Title", "Url");
-		for(String r : results) {
-			String[] parts = r.split(DatabaseManager.separator);
-			System.out.printf ("%-8s %-40s %s \n", parts[0], parts[1], GameDownloader.individualGamePageUrl + parts[0]);
+	private static void RunSearchServer(int port) throws Exception {
+		SemanticSearcher searcher = getSearcher();
+		searcher.warmUp();
+		System.out.println("Searcher ready, startup: " + searcher.getStartupMillis() + " ms, first query: "
+				+ searcher.getFirstQueryMillis() + " ms");
+		SearchServer server = new SearchServer(searcher, port);
+		server.start();
+		System.out.println("Enter -1 to stop the server");
+		BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+		String line;
+		while((line = br.readLine()) != null && !line.trim().equals("-1")) {
 		}
-		Set<String> withoutOntologyResults = searcher.Search(term, false);
-		Set<String> leftOutGames = new HashSet<String>(results);
-		leftOutGames.removeAll(withoutOntologyResults);
-		System.out.println("These games would have been left out had it not been for an ontology:");
-		System.out.printf ("%-8s %-10s \n", "Appid", "Title");
-		for(String r : leftOutGames) {
-			String[] parts = r.split(DatabaseManager.separator);
-			System.out.printf ("%-8s %-15s \n", parts[0], parts[1]);
+		server.stop(1);
+	}
+	
+	/**
+	 * Returns the searcher shared by every search of the program,
+	 * the ontology is only loaded the first time this is called.
+	 */
+	private static synchronized SemanticSearcher getSearcher() {
+		if(searcher == null) {
+			DatabaseManager manager = new DatabaseManager();
+			Runtime.getRuntime().addShutdownHook(new Thread(manager::close));
+			searcher = new SemanticSearcher(manager);
+		}
+		return searcher;
+	}
+	
+	private static void Search(String input, BufferedReader br) throws IOException {
+		SemanticSearcher searcher = getSearcher();
+		String term = TagQuery.fromInput(input);
+		ResultPage page;
+		int withoutOntology;
+		try {
+			page = searcher.SearchRanked(term, true, 0, PageSize, null);
+			withoutOntology = searcher.SearchQuery(term, false).size();
+		} catch (IllegalArgumentException e) {
+			System.out.println("Invalid query: " + e.getMessage());
+			return;
+		}
+		System.out.println("Results: " + page.getTotal() + ", without the ontology: " + withoutOntology);
+		System.out.printf ("%-8s %-40s %-6s %-12s %s \n", "Appid", "Title", "Score", "Match", "Url");
+		while (true) {
+			for (RankedResult r : page.getResults()) {
+				String match = r.getDistance() == 0 ? "direct" : "ontology +" + r.getDistance();
+				System.out.printf ("%-8s %-40s %-6.2f %-12s %s \n", r.getAppid(), r.getTitle(), r.getScore(), match,
+						GameDownloader.individualGamePageUrl + r.getAppid());
+			}
+			if (page.getNextCursor() == null)
+				break;
+			System.out.print("Press Enter for the next page, anything else to stop: ");
+			String line = br.readLine();
+			if (line == null || !line.isEmpty())
+				break;
+			page = searcher.SearchRanked(term, true, 0, PageSize, page.getNextCursor());
 		}
 	}
 	
 	private static void debugGetSubclasses() {
-		SemanticSearcher searcher = new SemanticSearcher(new DatabaseManager());
+		SemanticSearcher searcher = getSearcher();
 		System.out.println(searcher.getSubClasses("Horror", false));
 	}
 	
@@ -116,19 +215,20 @@ public class Program {
 	}
 	
 	private static void debugGetTagsForGame() {
-		GameDownloader gd = new GameDownloader();
-		gd.GetTagsForGame(69);
+		try (GameDownloader gd = new GameDownloader()) {
+			gd.GetTagsForGame(69);
+		}
 	}
 	
 	private static List<String> DownloadTags() {
 		List<String> tags = TagDownloader.getTagsFromSteamSpy();
-		System.out.println(tags);
+		System.out.println("Downloaded " + tags.size() + " tags");
 		return tags;
 	}
 	
 	private static void CreateOntology() throws Exception {
 		BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-        System.out.print("Ontology name or path: ");
+        System.out.print("Ontology name or path (.owl, .ofn, .owx or .ttl): ");
         String term = br.readLine();
         if(!(term.isEmpty() || term.length() == 0)) {
         	outputPath = term;
@@ -143,24 +243,93 @@ public class Program {
 	}
 	
 	private static void DownloadGamesList() {
-		GameDownloader gd = new GameDownloader();
-		List<Integer> appids = gd.GetAppids();
-		System.out.println(appids);
-		System.out.println(appids.size());
+		try (GameDownloader gd = new GameDownloader()) {
+			int[] appids = gd.GetAppids();
+			System.out.println(Arrays.toString(appids));
+			System.out.println(appids.length);
+		}
 	}
 	
 	private static void GetGamesData() {
-		GameDownloader gd = new GameDownloader();
-		List<String> data = gd.DownloadGameData(gd.GetAppids());
-		System.out.println(data);
+		try (GameDownloader gd = new GameDownloader()) {
+			List<GameTriple> data = gd.DownloadGameData(gd.GetAppids());
+			System.out.println(data);
+		}
 	}
 	
-	private static void PrintGameDataToDb() {
-		GameDownloader gd = new GameDownloader();
-		List<String> data = gd.DownloadGameData(gd.GetAppids());
-		DatabaseManager manager = new DatabaseManager();
-		manager.ResetDatabase();
-		manager.SaveToDatabase(data);
+	private static void PrintGameDataToDb() throws Exception {
+		try (GameDownloader gd = new GameDownloader(); DatabaseManager manager = new DatabaseManager()) {
+			manager.ResetDatabase();
+			LoadStatistics saved = new GameDataPipeline(gd, manager).run(gd.GetAppids());
+			System.out.println("Saved to database: " + saved);
+			printLatencies(gd);
+		}
+	}
+	
+	private static void SyncGameDataToDb() throws Exception {
+		try (GameDownloader gd = new GameDownloader(); DatabaseManager manager = new DatabaseManager()) {
+			LoadStatistics saved = new CatalogSync(gd, manager).run();
+			System.out.println("Saved to database: " + saved);
+			printLatencies(gd);
+		}
+	}
+	
+	private static void Generate(String[] args) throws Exception {
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int tags = args.length > 2 ? Integer.parseInt(args[2]) : 3390;
+		int roots = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+		int branching = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+		if (args.length <= 5 && DatabaseManager.Backend == StoreBackend.HTTP && !GenerateIntoHttp)
+			throw new IllegalArgumentException("Generate would replace the data of the rdf4j server: give a triples file, "
+					+ "use -Dstore.backend=memory or native, or set -Dgenerate.http=true to overwrite it");
+		
+		List<String> names = OntologyGenerator.Generate(tags, roots, branching, SemanticSearcher.ontologyNamespace,
+				generatedOntologyPath);
+		CatalogGenerator generator = new CatalogGenerator(names, games);
+		long start = System.nanoTime();
+		if (args.length > 5) {
+			long triples = generator.WriteNTriples(new File(args[5]), games);
+			System.out.println("Written " + triples + " triples of " + games + " games to " + args[5] + " in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+		} else {
+			try (DatabaseManager manager = new DatabaseManager()) {
+				manager.ResetDatabase();
+				System.out.println("Saved to database: " + generator.SaveToDatabase(manager, games));
+			}
+		}
+	}
+	
+	private static File requireFile(String[] args) {
+		if (args.length < 2)
+			throw new IllegalArgumentException("Missing file argument, e.g. games.nt.gz, games.ttl.gz or games.brf.gz");
+		return new File(args[1]);
+	}
+	
+	private static void ExportDb(File file) throws IOException {
+		try (DatabaseManager manager = new DatabaseManager()) {
+			long start = System.nanoTime();
+			long statements = manager.ExportDatabase(file);
+			System.out.println("Exported " + statements + " statements to " + file + " in "
+					+ (System.nanoTime() - start) / 1000000 + " ms, " + file.length() / 1024 + " KB");
+		}
+	}
+	
+	private static void ImportDb(File file) throws IOException {
+		if (!file.isFile())
+			throw new IllegalArgumentException("No such file: " + file);
+		// checked before the reset, so an unknown format does not leave an empty database
+		DatabaseManager.getFormat(file);
+		try (DatabaseManager manager = new DatabaseManager()) {
+			manager.ResetDatabase();
+			System.out.println("Imported: " + manager.ImportDatabase(file));
+		}
+	}
+	
+	private static void printLatencies(GameDownloader gd) {
+		for (Map.Entry<String, Timer> endpoint : gd.getFetcher().getLatencies().entrySet())
+			System.out.println("Latency of " + endpoint.getKey() + ": " + Metrics.format(endpoint.getValue()));
+		if (gd.getFetcher().getCache() != null)
+			System.out.println("Response cache: " + gd.getFetcher().getCache());
 	}
 
 }
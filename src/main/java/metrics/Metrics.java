@@ -0,0 +1,158 @@
+package metrics;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.codahale.metrics.CsvReporter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * The metrics of the whole program, kept in one registry.
+ * Timers, meters and histograms are created on first use by name, e.g. Metrics.timer("database.searchForTag").
+ * The registry can be exported to CSV files and to JMX, see startReporting.
+ */
+public final class Metrics {
+
+	/**
+	 * Directory the CSV reporter writes a file per metric to, no CSV export if null.
+	 * Can be set with the metrics.csv system property.
+	 */
+	public static String CsvDir = System.getProperty("metrics.csv");
+	/**
+	 * If true the metrics are published as JMX MBeans in the "komplexmi" domain.
+	 * Can be set with the metrics.jmx system property.
+	 */
+	public static boolean Jmx = Boolean.getBoolean("metrics.jmx");
+	/**
+	 * Seconds between two CSV reports. Can be set with the metrics.interval system property, default is 10.
+	 */
+	public static long ReportIntervalSeconds = Long.getLong("metrics.interval", 10);
+
+	private static final MetricRegistry registry = new MetricRegistry();
+	private static CsvReporter csvReporter;
+	private static JmxReporter jmxReporter;
+
+	private Metrics() {
+	}
+
+	public static MetricRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * @param name Name of the timer, the parts are joined with dots.
+	 * @return The timer with the given name, created if it does not exist.
+	 */
+	public static Timer timer(String... name) {
+		return registry.timer(String.join(".", name));
+	}
+
+	/**
+	 * @param name Name of the meter, the parts are joined with dots.
+	 * @return The meter with the given name, created if it does not exist.
+	 */
+	public static Meter meter(String... name) {
+		return registry.meter(String.join(".", name));
+	}
+
+	/**
+	 * @param name Name of the histogram, the parts are joined with dots.
+	 * @return The histogram with the given name, created if it does not exist.
+	 */
+	public static Histogram histogram(String... name) {
+		return registry.histogram(String.join(".", name));
+	}
+
+	/**
+	 * Registers a gauge, replacing the gauge registered before with the same name,
+	 * so a new instance of a component can take over the gauges of the previous one.
+	 * 
+	 * @param name Name of the gauge.
+	 * @param gauge The gauge.
+	 */
+	public static void gauge(String name, Gauge<?> gauge) {
+		synchronized (registry) {
+			registry.remove(name);
+			registry.register(name, gauge);
+		}
+	}
+
+	/**
+	 * Registers a gauge of the ratio of hits among hits and misses, see gauge.
+	 * 
+	 * @param name Name of the gauge.
+	 * @param hits Returns the number of hits.
+	 * @param misses Returns the number of misses.
+	 */
+	public static void hitRatio(String name, LongSupplier hits, LongSupplier misses) {
+		gauge(name, new RatioGauge() {
+			@Override
+			protected Ratio getRatio() {
+				long hitCount = hits.getAsLong();
+				return Ratio.of(hitCount, hitCount + misses.getAsLong());
+			}
+		});
+	}
+
+	/**
+	 * Starts the CSV and JMX export if CsvDir or Jmx is set. Does nothing if already started.
+	 */
+	public static synchronized void startReporting() {
+		if (CsvDir != null && csvReporter == null) {
+			File dir = new File(CsvDir);
+			dir.mkdirs();
+			csvReporter = CsvReporter.forRegistry(registry)
+					.formatFor(Locale.US)
+					.convertRatesTo(TimeUnit.SECONDS)
+					.convertDurationsTo(TimeUnit.MILLISECONDS)
+					.build(dir);
+			csvReporter.start(ReportIntervalSeconds, TimeUnit.SECONDS);
+		}
+		if (Jmx && jmxReporter == null) {
+			jmxReporter = JmxReporter.forRegistry(registry).inDomain("komplexmi")
+					.convertRatesTo(TimeUnit.SECONDS)
+					.convertDurationsTo(TimeUnit.MILLISECONDS)
+					.build();
+			jmxReporter.start();
+		}
+	}
+
+	/**
+	 * Writes a last CSV report and stops the export.
+	 */
+	public static synchronized void stopReporting() {
+		if (csvReporter != null) {
+			csvReporter.report();
+			csvReporter.stop();
+			csvReporter = null;
+		}
+		if (jmxReporter != null) {
+			jmxReporter.stop();
+			jmxReporter = null;
+		}
+	}
+
+	/**
+	 * @param timer A timer.
+	 * @return The count and the latency percentiles of the timer in ms, e.g. "120 requests, p50 35.1 ms, p95 ..."
+	 */
+	public static String format(Timer timer) {
+		Snapshot snapshot = timer.getSnapshot();
+		return String.format(Locale.US, "%d requests, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms",
+				timer.getCount(), millis(snapshot.getMedian()), millis(snapshot.get95thPercentile()),
+				millis(snapshot.get99thPercentile()), millis(snapshot.getMax()));
+	}
+
+	private static double millis(double nanos) {
+		return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
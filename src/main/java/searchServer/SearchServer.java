@@ -0,0 +1,271 @@
+package searchServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import databaseControl.DatabaseManager;
+import databaseControl.GameDownloader;
+import databaseControl.GameFilter;
+import databaseControl.ResultCache;
+import databaseControl.TagIndex;
+import semanticSearch.RankedResult;
+import semanticSearch.ResultPage;
+import semanticSearch.SemanticSearcher;
+
+public class SearchServer {
+
+	private static final Logger logger = LoggerFactory.getLogger(SearchServer.class);
+
+	/**
+	 * Default port of the server, 8080 is used by the rdf4j server.
+	 */
+	public static int Port = 8081;
+	/**
+	 * Number of requests handled at the same time. Default value is 32.
+	 */
+	public static int Threads = 32;
+	/**
+	 * Number of results returned by a search if the limit parameter is not given. Default value is 50.
+	 */
+	public static int PageSize = 50;
+	/**
+	 * Max value of the limit parameter. Default value is 1000.
+	 */
+	public static int MaxPageSize = 1000;
+	/**
+	 * Max value of the offset parameter, larger offsets are lowered to it, as every skipped game
+	 * is kept in memory while the page is ranked. Deeper pages are reached with the cursor.
+	 * Default value is 10 * MaxPageSize.
+	 */
+	public static int MaxOffset = 10 * MaxPageSize;
+
+	private final SemanticSearcher searcher;
+	private final HttpServer server;
+	private final ExecutorService pool;
+
+	/**
+	 * Creates a server answering searches with the given searcher.
+	 * The server does not accept requests until start() is called.
+	 * 
+	 * @param searcher The searcher shared by every request.
+	 * @param port The port to listen on.
+	 * @throws IOException If the port cannot be opened.
+	 */
+	public SearchServer(SemanticSearcher searcher, int port) throws IOException {
+		this.searcher = searcher;
+		AtomicInteger counter = new AtomicInteger();
+		pool = Executors.newFixedThreadPool(Threads, r -> new Thread(r, "search-" + counter.incrementAndGet()));
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.setExecutor(pool);
+		server.createContext("/search", this::handleSearch);
+		server.createContext("/stats", this::handleStats);
+	}
+
+	/**
+	 * Starts accepting requests on a background thread.
+	 * 
+	 * Endpoint: GET /search?tag=Horror&expand=true&limit=50&offset=0&cursor=...
+	 * expand is optional, true by default. The results are ranked, best first, and paginated:
+	 * limit is the page size (PageSize by default), the next page is requested either by offset
+	 * (at most MaxOffset) or by passing the nextCursor of the previous page. The response is a json object:
+	 * {"tag": "Horror", "expand": true, "count": 120, "results": [{"appid": 1, "title": "...", "url": "...",
+	 * "score": 1.45, "metaScore": 90, "matchedTags": 1, "distance": 0}], "nextCursor": "..."}
+	 * count is the number of every match, nextCursor is missing on the last page.
+	 * Instead of tag a boolean query can be given in q, e.g. /search?q=Horror AND NOT Early_Access,
+	 * the response then has "q" instead of "tag".
+	 * The results can be filtered with minScore and maxScore (metacritic score, inclusive),
+	 * category (comma separated, a game must have all of them) and type, e.g.
+	 * /search?tag=Horror&minScore=81&category=Co-op&type=game. With a filter tag and q may be left out,
+	 * then every game passing the filter is returned, best metacritic score first.
+	 * 
+	 * Endpoint: GET /stats
+	 * Returns the tag index /search runs on: {"tagIndex": {"built": true, "games": 120, "tags": 339,
+	 * "sizeBytes": 5120, "buildMillis": 80, "ageSeconds": 42, "maxAgeSeconds": 600}}, "built" is false
+	 * before the first search. "legacyCaches" holds the counters of the SPARQL result caches,
+	 * used only by the unranked SemanticSearcher.Search, not by /search.
+	 */
+	public void start() {
+		server.start();
+		logger.info("Search server listening on http://localhost:{}/search", server.getAddress().getPort());
+	}
+
+	/**
+	 * Stops the server, waits at most the given number of seconds for running requests.
+	 * 
+	 * @param delaySeconds Max time to wait for running requests.
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		pool.shutdown();
+	}
+
+	private void handleSearch(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Only GET is supported");
+				return;
+			}
+			Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+			String tag = params.get("tag");
+			String query = params.get("q");
+			GameFilter filter;
+			try {
+				filter = parseFilter(params);
+			} catch (IllegalArgumentException e) {
+				sendError(exchange, 400, e.getMessage());
+				return;
+			}
+			boolean hasTag = tag != null && !tag.trim().isEmpty();
+			boolean isQuery = query != null && !query.trim().isEmpty();
+			if (!hasTag && !isQuery && filter.isEmpty()) {
+				sendError(exchange, 400, "Missing parameter: tag, q or a filter");
+				return;
+			}
+			boolean expand = !"false".equalsIgnoreCase(params.get("expand"));
+
+			String search = isQuery ? query.trim() : hasTag ? tag.trim() : null;
+			ResultPage page;
+			try {
+				int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : PageSize;
+				int offset = params.containsKey("offset") ? Integer.parseInt(params.get("offset")) : 0;
+				// a single tag is quoted, so tags with spaces are not split into several terms
+				page = searcher.SearchRanked(isQuery || search == null ? search : '"' + search + '"', expand, filter,
+						Math.min(Math.max(offset, 0), MaxOffset), Math.min(limit, MaxPageSize), params.get("cursor"));
+			} catch (IllegalArgumentException e) {
+				sendError(exchange, 400, e.getMessage());
+				return;
+			}
+			JsonObject response = new JsonObject();
+			if (search != null)
+				response.addProperty(isQuery ? "q" : "tag", search);
+			if (!filter.isEmpty())
+				response.addProperty("filter", filter.toString());
+			response.addProperty("expand", expand);
+			response.addProperty("count", page.getTotal());
+			JsonArray array = new JsonArray();
+			for (RankedResult r : page.getResults()) {
+				JsonObject game = new JsonObject();
+				game.addProperty("appid", r.getAppid());
+				game.addProperty("title", r.getTitle());
+				game.addProperty("url", GameDownloader.individualGamePageUrl + r.getAppid());
+				game.addProperty("score", r.getScore());
+				if (r.getMetaScore() >= 0)
+					game.addProperty("metaScore", r.getMetaScore());
+				game.addProperty("matchedTags", r.getMatchedTags());
+				game.addProperty("distance", r.getDistance());
+				array.add(game);
+			}
+			response.add("results", array);
+			if (page.getNextCursor() != null)
+				response.addProperty("nextCursor", page.getNextCursor());
+			send(exchange, 200, response);
+		} catch (Exception e) {
+			logger.error("Search failed: " + exchange.getRequestURI(), e);
+			sendError(exchange, 500, e.toString());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void handleStats(HttpExchange exchange) throws IOException {
+		try {
+			DatabaseManager dm = searcher.getDatabaseManager();
+			JsonObject response = new JsonObject();
+			response.add("tagIndex", indexStats(dm.peekTagIndex()));
+			JsonObject legacy = new JsonObject();
+			legacy.add("tagCache", cacheStats(dm.getTagCache()));
+			legacy.add("expandedCache", cacheStats(dm.getTagSetCache()));
+			response.add("legacyCaches", legacy);
+			send(exchange, 200, response);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static JsonObject indexStats(TagIndex index) {
+		JsonObject stats = new JsonObject();
+		stats.addProperty("built", index != null);
+		if (index != null) {
+			stats.addProperty("games", index.size());
+			stats.addProperty("tags", index.getTags().size());
+			stats.addProperty("sizeBytes", index.getSizeInBytes());
+			stats.addProperty("buildMillis", index.getBuildMillis());
+			stats.addProperty("ageSeconds", (System.currentTimeMillis() - index.getBuiltAt()) / 1000);
+		}
+		stats.addProperty("maxAgeSeconds", DatabaseManager.TagIndexMaxAgeSeconds);
+		return stats;
+	}
+
+	private static JsonObject cacheStats(ResultCache<?, ?> cache) {
+		JsonObject stats = new JsonObject();
+		stats.addProperty("size", cache.size());
+		stats.addProperty("hits", cache.getHits());
+		stats.addProperty("misses", cache.getMisses());
+		stats.addProperty("evictions", cache.getEvictions());
+		stats.addProperty("expirations", cache.getExpirations());
+		stats.addProperty("invalidations", cache.getInvalidations());
+		return stats;
+	}
+
+	private static GameFilter parseFilter(Map<String, String> params) {
+		GameFilter filter = new GameFilter();
+		if (params.containsKey("minScore"))
+			filter.setMinMetaScore(Integer.parseInt(params.get("minScore").trim()));
+		if (params.containsKey("maxScore"))
+			filter.setMaxMetaScore(Integer.parseInt(params.get("maxScore").trim()));
+		if (params.containsKey("category")) {
+			for (String category : params.get("category").split(","))
+				if (!category.trim().isEmpty())
+					filter.addCategory(category);
+		}
+		if (params.containsKey("type") && !params.get("type").trim().isEmpty())
+			filter.setType(params.get("type"));
+		return filter;
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> result = new HashMap<>();
+		if (query == null)
+			return result;
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq <= 0)
+				continue;
+			result.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+					URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+		}
+		return result;
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		JsonObject error = new JsonObject();
+		error.addProperty("error", message);
+		send(exchange, status, error);
+	}
+
+	private static void send(HttpExchange exchange, int status, JsonObject body) throws IOException {
+		byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+}
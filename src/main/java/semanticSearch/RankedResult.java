@@ -0,0 +1,65 @@
+package semanticSearch;
+
+/**
+ * A game found by a ranked search, with the data its rank was computed from.
+ */
+public final class RankedResult {
+
+	private final int appid;
+	private final String title;
+	private final double score;
+	private final int metaScore;
+	private final int matchedTags;
+	private final int distance;
+
+	public RankedResult(int appid, String title, double score, int metaScore, int matchedTags, int distance) {
+		this.appid = appid;
+		this.title = title;
+		this.score = score;
+		this.metaScore = metaScore;
+		this.matchedTags = matchedTags;
+		this.distance = distance;
+	}
+
+	public int getAppid() {
+		return appid;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * @return The rank of the game, higher is better.
+	 */
+	public double getScore() {
+		return score;
+	}
+
+	/**
+	 * @return The metacritic score of the game, -1 if it has none.
+	 */
+	public int getMetaScore() {
+		return metaScore;
+	}
+
+	/**
+	 * @return Number of tags of the query the game has, directly or through the ontology.
+	 */
+	public int getMatchedTags() {
+		return matchedTags;
+	}
+
+	/**
+	 * @return 0 if every matched tag of the query is on the game itself, otherwise the largest
+	 * 		   number of subclass steps between a tag of the query and the tag of the game it matched.
+	 */
+	public int getDistance() {
+		return distance;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d %s (%.3f)", appid, title, score);
+	}
+}
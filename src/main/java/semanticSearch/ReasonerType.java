@@ -0,0 +1,80 @@
+package semanticSearch;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+
+import org.slf4j.LoggerFactory;
+
+import openllet.owlapi.OpenlletReasonerFactory;
+
+/**
+ * The reasoners the ontology can be classified with.
+ */
+public enum ReasonerType {
+	/**
+	 * HermiT, a complete OWL 2 reasoner.
+	 */
+	HERMIT,
+	/**
+	 * Openllet, a complete OWL 2 reasoner.
+	 */
+	OPENLLET,
+	/**
+	 * The structural reasoner of the OWLAPI, only uses the asserted axioms. Much faster than the
+	 * complete reasoners and gives the same hierarchy for ontologies of plain subclass axioms,
+	 * like the tag ontology, but does not check consistency.
+	 */
+	STRUCTURAL,
+	/**
+	 * No reasoner, only the snapshot compiled by SemanticSearcher.CompileOntology is used.
+	 */
+	PRECOMPUTED;
+
+	/**
+	 * Reads a reasoner name, e.g. the value of a system property, case insensitively.
+	 * An unknown name is logged with the allowed values and the fallback is used,
+	 * so a typo does not stop the searcher from loading.
+	 * 
+	 * @param name The name of the reasoner, null for the fallback.
+	 * @param fallback Returned if the name is null or unknown.
+	 * @return The reasoner with the name, or the fallback.
+	 */
+	public static ReasonerType parse(String name, ReasonerType fallback) {
+		if (name == null || name.trim().isEmpty())
+			return fallback;
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			LoggerFactory.getLogger(ReasonerType.class).warn("Unknown reasoner {}, using {}. Allowed values: {}", name,
+					fallback.name().toLowerCase(Locale.ROOT), Arrays.toString(values()).toLowerCase(Locale.ROOT));
+			return fallback;
+		}
+	}
+
+	/**
+	 * @return A new factory of this reasoner.
+	 * @throws IllegalStateException If the type is PRECOMPUTED, which has no reasoner.
+	 */
+	public OWLReasonerFactory createFactory() {
+		switch (this) {
+			case HERMIT: return new org.semanticweb.HermiT.Reasoner.ReasonerFactory();
+			case OPENLLET: return new OpenlletReasonerFactory();
+			case STRUCTURAL: return new StructuralReasonerFactory();
+			default: throw new IllegalStateException("The precomputed hierarchy has no reasoner, compile the ontology instead");
+		}
+	}
+
+	/**
+	 * @param ontology The ontology to reason over.
+	 * @return A new reasoner of this type for the ontology.
+	 * @throws IllegalStateException If the type is PRECOMPUTED, which has no reasoner.
+	 */
+	public OWLReasoner createReasoner(OWLOntology ontology) {
+		return createFactory().createReasoner(ontology);
+	}
+}
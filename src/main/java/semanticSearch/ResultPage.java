@@ -0,0 +1,41 @@
+package semanticSearch;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a ranked search.
+ */
+public final class ResultPage {
+
+	private final List<RankedResult> results;
+	private final int total;
+	private final String nextCursor;
+
+	public ResultPage(List<RankedResult> results, int total, String nextCursor) {
+		this.results = Collections.unmodifiableList(results);
+		this.total = total;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * @return The games of the page, best first.
+	 */
+	public List<RankedResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return Number of games matching the search, on every page.
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return Pass this to the next search to get the following page, null if this is the last page.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+}
@@ -0,0 +1,136 @@
+package semanticSearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import databaseControl.TagIndex;
+
+/**
+ * Ranks the games found by a query and selects one page of them.
+ * 
+ * Every tag of the query a game matches adds 1 / (1 + distance) to its score,
+ * where distance is 0 for the tag itself and the number of subclass steps for
+ * a descendant found through the ontology. The metacritic score adds
+ * SemanticSearcher.MetaScoreWeight * metaScore / 100. Ties are broken by ascending appid.
+ * 
+ * Only the best offset + limit games are kept in a heap while the matches are scored,
+ * the full result is never sorted. A cursor continues after the last game of the
+ * previous page, so only limit games have to be kept.
+ */
+class SearchRanker {
+
+	private static final Comparator<RankedResult> bestFirst = Comparator
+			.comparingDouble(RankedResult::getScore).reversed()
+			.thenComparingInt(RankedResult::getAppid);
+
+	private final TagIndex index;
+	private final List<Map<String, Integer>> terms;
+
+	/**
+	 * @param index The index the games are looked up in.
+	 * @param terms One map for every tag of the query that is not negated, from the tag
+	 * 		  and the descendants it matches to their distance from the tag of the query,
+	 * 		  iterating nearest first.
+	 */
+	SearchRanker(TagIndex index, List<Map<String, Integer>> terms) {
+		this.index = index;
+		this.terms = terms;
+	}
+
+	/**
+	 * @param games The appids matching the query.
+	 * @param offset Number of best games to skip, ignored if a cursor is given.
+	 * @param limit Max number of games on the page.
+	 * @param cursor The next cursor of the previous page, or null for the first page.
+	 * @return The page.
+	 * @throws IllegalArgumentException If the cursor is not one returned by a page,
+	 * 		   the offset is negative or the limit is not positive.
+	 */
+	ResultPage rank(RoaringBitmap games, int offset, int limit, String cursor) {
+		if (limit <= 0)
+			throw new IllegalArgumentException("limit must be positive");
+		if (offset < 0)
+			throw new IllegalArgumentException("offset must not be negative");
+		double afterScore = Double.POSITIVE_INFINITY;
+		int afterAppid = -1;
+		if (cursor != null) {
+			int separator = cursor.indexOf('-');
+			try {
+				afterScore = Double.longBitsToDouble(Long.parseUnsignedLong(cursor.substring(0, separator), 16));
+				afterAppid = Integer.parseInt(cursor.substring(separator + 1));
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("Invalid cursor: " + cursor);
+			}
+			offset = 0;
+		}
+
+		int total = games.getCardinality();
+		if (offset >= total)
+			return new ResultPage(new ArrayList<>(), total, null);
+		// never more than the matches, and no overflow for an offset close to Integer.MAX_VALUE
+		int keep = (int) Math.min((long) offset + limit, total);
+		// worst of the kept games at the head
+		PriorityQueue<RankedResult> heap = new PriorityQueue<>(Math.min(keep, 1024) + 1, bestFirst.reversed());
+		int remaining = 0;
+		int[] match = new int[2];
+		IntIterator it = games.getIntIterator();
+		while (it.hasNext()) {
+			int appid = it.next();
+			double score = score(appid, match);
+			if (cursor != null && (score > afterScore || score == afterScore && appid <= afterAppid))
+				continue;
+			remaining++;
+			if (heap.size() == keep) {
+				RankedResult worst = heap.peek();
+				if (score < worst.getScore() || score == worst.getScore() && appid > worst.getAppid())
+					continue;
+				heap.poll();
+			}
+			heap.add(new RankedResult(appid, index.getTitle(appid), score, index.getMetaScore(appid), match[0], match[1]));
+		}
+
+		List<RankedResult> best = new ArrayList<>(heap);
+		Collections.sort(best, bestFirst);
+		List<RankedResult> page = offset < best.size() ? best.subList(offset, best.size()) : new ArrayList<>();
+		String next = null;
+		if (offset + page.size() < remaining && !page.isEmpty()) {
+			RankedResult last = page.get(page.size() - 1);
+			next = Long.toHexString(Double.doubleToLongBits(last.getScore())) + "-" + last.getAppid();
+		}
+		return new ResultPage(new ArrayList<>(page), total, next);
+	}
+
+	/**
+	 * @param match Receives the number of matched tags and the largest distance of a match.
+	 */
+	private double score(int appid, int[] match) {
+		match[0] = 0;
+		match[1] = 0;
+		double score = 0;
+		for (Map<String, Integer> term : terms) {
+			int best = -1;
+			for (Map.Entry<String, Integer> tag : term.entrySet()) {
+				if (index.getGames(tag.getKey()).contains(appid)) {
+					best = tag.getValue();
+					break;
+				}
+			}
+			if (best >= 0) {
+				score += 1.0 / (1 + best);
+				match[0]++;
+				match[1] = Math.max(match[1], best);
+			}
+		}
+		int metaScore = index.getMetaScore(appid);
+		if (metaScore > 0)
+			score += SemanticSearcher.MetaScoreWeight * metaScore / 100;
+		return score;
+	}
+}
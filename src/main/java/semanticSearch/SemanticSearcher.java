@@ -1,72 +1,298 @@
 package semanticSearch;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.reasoner.InferenceType;
 import org.semanticweb.owlapi.reasoner.Node;
-import org.semanticweb.owlapi.reasoner.NodeSet;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
-import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
 import org.semanticweb.owlapi.reasoner.OWLReasonerRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Timer;
 
 import createOntology.OntologyClassCreator;
 import databaseControl.DatabaseManager;
+import databaseControl.GameFilter;
+import databaseControl.GameResult;
+import databaseControl.TagIndex;
+import metrics.Metrics;
 
 public class SemanticSearcher {
+	private static final Logger logger = LoggerFactory.getLogger(SemanticSearcher.class);
 	/**
 	 * The file path from where the ontology should be loaded.
+	 * Can be set with the ontology.path system property, default is "GamingOntology_done.owl".
+	 */
+	public static String ontologyPath = System.getProperty("ontology.path", "GamingOntology_done.owl");
+	/**
+	 * Extension of the compiled snapshot of the ontology, stored next to the ontology file
+	 * (GamingOntology_done.owl.idx by default). Default value is ".idx".
+	 */
+	public static String SnapshotExtension = ".idx";
+	/**
+	 * The reasoner classifying the ontology when there is no up to date compiled snapshot.
+	 * With PRECOMPUTED the snapshot is required. Can be set with the ontology.reasoner
+	 * system property (hermit, openllet, structural, precomputed), default is hermit,
+	 * an unknown value is logged and hermit is used.
+	 */
+	public static ReasonerType Reasoner = ReasonerType.parse(System.getProperty("ontology.reasoner"), ReasonerType.HERMIT);
+	/**
+	 * The namespace of the classes the searches are expanded with.
 	 */
-	public static String ontologyPath = "GamingOntology_done.owl";
-	private static final String ontologyNamespace = "http://www.w3.org/2002/07/hu.komplexmi.e5q6ui#";
+	public static final String ontologyNamespace = "http://www.w3.org/2002/07/hu.komplexmi.e5q6ui#";
 	private final DatabaseManager dm;
+	private final long startupNanos;
+	private final AtomicLong firstQueryNanos = new AtomicLong(-1);
 	
     OWLOntologyManager manager;
     OWLOntology ontology;
     OWLReasoner reasoner;
     OWLDataFactory factory;
+    volatile SubClassIndex subClassIndex;
+    private volatile long ontologyModified;
+    private volatile long nextOntologyCheck;
+	
+	/**
+	 * How often Search checks if the ontology file was modified, in milliseconds.
+	 * Default value is 1000.
+	 */
+	public static long OntologyCheckIntervalMillis = 1000;
+	/**
+	 * Weight of the metacritic score in ranked searches, a score of 100 is worth
+	 * this many directly matched tags. Default value is 0.5.
+	 */
+	public static double MetaScoreWeight = 0.5;
 	
     /**
      * Main constructor, expects a databasemanager, which could be an empty one.
      * Loads the ontology from the set path, and checks if it is consistent,
-     * kills program if not.
+     * throws if it cannot be loaded or is not. If the compiled snapshot (see CompileOntology) is not older
+     * than the ontology file it is loaded instead. The subclass hierarchy is classified once here,
+     * searches use the precomputed SubClassIndex instead of the reasoner.
+     * Loading is expensive, so one instance should be created and reused,
+     * Search and getSubClasses can be called from multiple threads.
      * 
      * @param dm DatabaseManager object, can be a brand new one.
+     * @throws IllegalStateException If the ontology cannot be loaded, is not consistent or the reasoner fails.
      */
 	public SemanticSearcher(DatabaseManager dm) {
+		long start = System.nanoTime();
 		this.dm = dm;
 		manager = OWLManager.createOWLOntologyManager();
-		
-		try {
-			ontology = manager.loadOntologyFromOntologyDocument(new File(ontologyPath));
-		} catch (Exception e) {
-			e.printStackTrace();
+		factory = manager.getOWLDataFactory();
+		ontologyModified = new File(ontologyPath).lastModified();
+		subClassIndex = loadOntology();
+		startupNanos = System.nanoTime() - start;
+	}
+	
+	/**
+	 * Loads the compiled snapshot of the ontology if it is not older than the ontology file,
+	 * otherwise loads the ontology file and classifies it. The ontology loaded before
+	 * is only replaced once the new one is classified, so it is kept if loading fails.
+	 * 
+	 * @return The subclass index of the ontology.
+	 * @throws IllegalStateException If the ontology cannot be loaded, has no classes, is not consistent
+	 * 		   or the reasoner fails.
+	 */
+	private SubClassIndex loadOntology() {
+		File snapshot = getSnapshotFile();
+		if (snapshot.isFile() && snapshot.lastModified() >= new File(ontologyPath).lastModified()) {
+			try {
+				SubClassIndex index = SubClassIndex.load(snapshot);
+				logger.info("Loaded compiled ontology: {} ({} classes)", snapshot, index.size());
+				replaceOntology(manager, null, null);
+				return index;
+			} catch (IOException e) {
+				logger.warn("Cannot use the compiled ontology, classifying instead: {}", e.getMessage());
+			}
 		}
-		OWLReasonerFactory reasonerFactory = new org.semanticweb.HermiT.Reasoner.ReasonerFactory();
-		reasoner = reasonerFactory.createReasoner(ontology);
-		
+		if (Reasoner == ReasonerType.PRECOMPUTED)
+			throw new IllegalStateException("No up to date compiled ontology for " + ontologyPath + ", run CompileOntology first");
+		// a new manager, the old one still holds the previous version under the same IRI
+		OWLOntologyManager newManager = OWLManager.createOWLOntologyManager();
+		OWLOntology newOntology;
 		try {
-	        if (!reasoner.isConsistent()) {
-	        	System.err.println("Az ontolgia nem konzisztens!");
-	        	
-	            Node<OWLClass> incClss = reasoner.getUnsatisfiableClasses();
-                System.err.println("A kvetkez osztlyok nem konzisztensek:" + incClss.getEntities());
-	        	System.exit(-1);
-	        }
+			newOntology = newManager.loadOntologyFromOntologyDocument(new File(ontologyPath));
+		} catch (OWLOntologyCreationException e) {
+			throw new IllegalStateException("Loading the ontology failed: " + ontologyPath, e);
+		}
+		// a file cut off while it is being saved can parse as an empty ontology
+		if (!newOntology.classesInSignature().anyMatch(c -> !c.isBuiltIn()))
+			throw new IllegalStateException("The ontology has no classes: " + ontologyPath);
+		OWLReasoner newReasoner = null;
+		SubClassIndex index;
+		try (Timer.Context time = Metrics.timer("ontology.classify").time()) {
+			newReasoner = Reasoner.createReasoner(newOntology);
+			index = classify(newOntology, newReasoner);
 		} catch (OWLReasonerRuntimeException e) {
-			System.err.println("Hiba a kvetkeztetben: " + e.getMessage());
-			System.exit(-1);
+			logger.error("Hiba a kvetkeztetben: " + e.getMessage());
+			if (newReasoner != null)
+				newReasoner.dispose();
+			throw new IllegalStateException("The reasoner failed on " + ontologyPath, e);
 		}
-		factory = manager.getOWLDataFactory();
+		if (index == null) {
+			newReasoner.dispose();
+			throw new IllegalStateException("The ontology is not consistent: " + ontologyPath);
+		}
+		replaceOntology(newManager, newOntology, newReasoner);
+		return index;
+	}
+	
+	private void replaceOntology(OWLOntologyManager newManager, OWLOntology newOntology, OWLReasoner newReasoner) {
+		if (reasoner != null)
+			reasoner.dispose();
+		if (ontology != null)
+			manager.removeOntology(ontology);
+		manager = newManager;
+		factory = newManager.getOWLDataFactory();
+		ontology = newOntology;
+		reasoner = newReasoner;
+	}
+	
+	private static SubClassIndex classify(OWLOntology ontology, OWLReasoner reasoner) {
+        if (!reasoner.isConsistent()) {
+        	logger.error("Az ontolgia nem konzisztens!");
+        	
+            Node<OWLClass> incClss = reasoner.getUnsatisfiableClasses();
+            logger.error("A kvetkez osztlyok nem konzisztensek: {}", incClss.getEntities());
+        	return null;
+        }
+        reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+        return SubClassIndex.build(ontology, reasoner);
+	}
+	
+	/**
+	 * @return The compiled snapshot file of the ontology at ontologyPath.
+	 */
+	public static File getSnapshotFile() {
+		return new File(ontologyPath + SnapshotExtension);
+	}
+	
+	/**
+	 * Loads and classifies the ontology at ontologyPath and saves the classified hierarchy
+	 * to its snapshot file, so searchers can start without parsing and reasoning.
+	 * The ontology is classified with Reasoner, or with HermiT if Reasoner is PRECOMPUTED.
+	 * The snapshot is only used while it is newer than the ontology file,
+	 * so it has to be compiled again after the ontology is edited.
+	 * 
+	 * @return The snapshot file written.
+	 * @throws Exception If the ontology cannot be loaded or is not consistent, or the snapshot cannot be written.
+	 */
+	public static File CompileOntology() throws Exception {
+		long start = System.nanoTime();
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLOntology ontology = manager.loadOntologyFromOntologyDocument(new File(ontologyPath));
+		ReasonerType type = Reasoner == ReasonerType.PRECOMPUTED ? ReasonerType.HERMIT : Reasoner;
+		OWLReasoner reasoner = type.createReasoner(ontology);
+		try {
+			SubClassIndex index = classify(ontology, reasoner);
+			if (index == null)
+				throw new IllegalStateException("The ontology is not consistent: " + ontologyPath);
+			File snapshot = getSnapshotFile();
+			index.save(snapshot);
+			logger.info("Compiled {} classes to {} ({} bytes) in {} ms", index.size(), snapshot, snapshot.length(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			return snapshot;
+		} finally {
+			reasoner.dispose();
+		}
+	}
+	
+	/**
+	 * Reloads the ontology and drops the cached expanded searches if the
+	 * ontology file was modified since it was loaded. If the new version cannot be
+	 * loaded or is not consistent the previous ontology and index are kept, and the
+	 * file is not tried again until it is modified again. Search calls this at most every OntologyCheckIntervalMillis.
+	 */
+	public void reloadOntologyIfChanged() {
+		long modified = new File(ontologyPath).lastModified();
+		if (modified == ontologyModified)
+			return;
+		synchronized (this) {
+			if (modified == ontologyModified)
+				return;
+			ontologyModified = modified;
+			try {
+				subClassIndex = loadOntology();
+				logger.info("Ontology reloaded: {}", ontologyPath);
+			} catch (RuntimeException e) {
+				logger.error("Reloading the ontology failed, keeping the previous one", e);
+				return;
+			}
+			dm.getTagSetCache().invalidateAll();
+		}
+	}
+	
+	private void checkOntologyFile() {
+		long now = System.currentTimeMillis();
+		if (now < nextOntologyCheck)
+			return;
+		nextOntologyCheck = now + OntologyCheckIntervalMillis;
+		reloadOntologyIfChanged();
+	}
+	
+	/**
+	 * @return The DatabaseManager used by the searches.
+	 */
+	public DatabaseManager getDatabaseManager() {
+		return dm;
+	}
+	
+	/**
+	 * Runs a search for the first class of the ontology, so the database connection
+	 * and the query path are set up before the first real search arrives.
+	 */
+	public void warmUp() {
+		if (subClassIndex.size() > 0)
+			Search(subClassIndex.getName(0));
+	}
+	
+	/**
+	 * @return Time spent in the constructor loading the ontology and classifying it, in milliseconds.
+	 */
+	public long getStartupMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(startupNanos);
+	}
+	
+	/**
+	 * @return Duration of the first search in milliseconds (the warm-up if it was called),
+	 * 		   or -1 if no search has finished yet.
+	 */
+	public long getFirstQueryMillis() {
+		long nanos = firstQueryNanos.get();
+		return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+	
+	/**
+	 * @return The names (IRI fragments) of every class of the ontology.
+	 */
+	public List<String> getClassNames() {
+		SubClassIndex index = subClassIndex;
+		List<String> result = new ArrayList<>(index.size());
+		for (int i = 0; i < index.size(); i++)
+			result.add(index.getName(i));
+		return result;
 	}
 	
 	/**
@@ -76,66 +302,181 @@ public class SemanticSearcher {
 	 * 
 	 * @param className name of ontology class to search for
 	 * @param direct return every descendant or only the direct ones
-	 * @return A String list containing the fragment parts of the name of the descendants,
+	 * @return An unmodifiable String list containing the fragment parts of the name of the descendants,
 	 * 		   or empty list if class is not found in ontoloy, or there are no descendants.
 	 */
 	public List<String> getSubClasses(String className, boolean direct) {
-        IRI clsIRI = IRI.create(ontologyNamespace + className);
-        System.out.println("Searching for IRI: " + clsIRI);
-        if (!ontology.containsClassInSignature(clsIRI)) {
-        	System.out.println("Tag is not present in ontology:" + className);
-        	return Collections.EMPTY_LIST;
-        }
-        // Ltrehozzuk az osztly egy pldnyt s lekrdezzk a leszrmazottait.
-        OWLClass cls = factory.getOWLClass(clsIRI);
-        NodeSet<OWLClass> subClss;
-		try {
-			subClss = reasoner.getSubClasses(cls, direct);
-		} catch (OWLReasonerRuntimeException e) {
-			System.err.println("Hiba az alosztlyok kvetkeztetse kzben: " + e.getMessage());
-			return Collections.EMPTY_LIST;
+		try (Timer.Context time = Metrics.timer("ontology.getSubClasses").time()) {
+			IRI clsIRI = IRI.create(ontologyNamespace + className);
+			logger.debug("Searching for IRI: {}", clsIRI);
+			if (subClassIndex.getId(clsIRI.toString()) < 0) {
+				logger.debug("Tag is not present in ontology: {}", className);
+				return Collections.emptyList();
+			}
+			return subClassIndex.getSubClasses(clsIRI.toString(), direct);
 		}
-        List<String> result = new ArrayList<>();
-        for(OWLClass i : subClss.getFlattened()) {
-        	if(!i.isBuiltIn())
-        		result.add(i.getIRI().getFragment());
-        }
-        return result;
-    }
+	}
 	
 	/**
 	 * Calls the other Search method with expandSearch=true.
 	 * 
 	 * @param search
-	 * @return A String set containing the results to the search.
+	 * @return The games found by the search.
 	 * @see Search(String search, boolean expandSearch)
 	 */
-	public Set<String> Search(String search){
+	public Set<GameResult> Search(String search){
 		return Search(search, true);
 	}
 	
 	/**
 	 * Searches for the given search argument and also its descendants in the ontology
 	 * if expandSearch is set to True. Uses getSubClasses method.
-	 * Every entry in the returned String set contains the appid and title of a game,
-	 * separated by the SEPARATOR in DatabaseManager
-	 * E.g. 470_Dota2
+	 * The tag and all of its descendants are searched for with a single database query,
+	 * whose results are cached by the DatabaseManager.
+	 * Every entry in the returned set contains the appid and title of a game.
 	 * 
 	 * @param search Tag to search for.
 	 * @param expandSearch If true also includes descendants of Tag in ontology in the search.
-	 * @return A String set containing the results to the search.
-	 */
-	public Set<String> Search(String search, boolean expandSearch){
-		Set<String> result = new HashSet<>();
-		result.addAll(dm.searchForTag(search));
-		
-		if(expandSearch) {
-			for(String extraSearch : getSubClasses(search, false)) {
-				System.out.println("Extra tag added to search: " + extraSearch);
-				result.addAll(dm.searchForTag(extraSearch));
-			}			
+	 * @return The games found by the search.
+	 */
+	public Set<GameResult> Search(String search, boolean expandSearch){
+		long start = System.nanoTime();
+		checkOntologyFile();
+		Set<GameResult> result = new HashSet<>();
+		if(!expandSearch) {
+			result.addAll(dm.searchForTag(search));
+		} else {
+			List<String> tags = new ArrayList<>();
+			tags.add(search);
+			tags.addAll(getSubClasses(search, false));
+			if (logger.isDebugEnabled())
+				logger.debug("Extra tags added to search: {}", tags.subList(1, tags.size()));
+			result.addAll(dm.searchForTags(tags));
+		}
+		recordQuery("search.tag", start);
+		return result;
+	}
+	
+	/**
+	 * Searches for a boolean combination of tags, e.g. "Horror AND Multiplayer NOT Early_Access".
+	 * If expandSearch is True every tag of the query also matches its descendants in the ontology,
+	 * so NOT Horror also excludes the Gore games. The query is evaluated on the TagIndex
+	 * of the DatabaseManager, not with SPARQL.
+	 * 
+	 * @param query The query, see TagQuery for the syntax.
+	 * @param expandSearch If true every tag is expanded with its descendants in the ontology.
+	 * @return The games matching the query, in ascending appid order.
+	 * @throws IllegalArgumentException If the query is not well formed.
+	 */
+	public Set<GameResult> SearchQuery(String query, boolean expandSearch) {
+		return SearchQuery(query, expandSearch, null);
+	}
+	
+	/**
+	 * Same as SearchQuery, but only the games passing the filter are returned,
+	 * e.g. SearchQuery("Horror", true, new GameFilter().setMinMetaScore(81).addCategory("Co-op")).
+	 * The filter is evaluated on the secondary indexes of the TagIndex.
+	 * 
+	 * @param query The query, see TagQuery for the syntax, or null to filter every game.
+	 * @param expandSearch If true every tag is expanded with its descendants in the ontology.
+	 * @param filter The filter of the games, null for no filter.
+	 * @return The games matching the query and the filter, in ascending appid order.
+	 * @throws IllegalArgumentException If the query is not well formed.
+	 */
+	public Set<GameResult> SearchQuery(String query, boolean expandSearch, GameFilter filter) {
+		long start = System.nanoTime();
+		checkOntologyFile();
+		TagIndex index = dm.getTagIndex();
+		RoaringBitmap games = query == null ? index.getAllGames() : evaluate(TagQuery.parse(query), expandSearch, index);
+		if (filter != null && !filter.isEmpty())
+			games = index.filter(games, filter);
+		Set<GameResult> result = new LinkedHashSet<>(index.toResults(games));
+		recordQuery("search.query", start);
+		return result;
+	}
+	
+	/**
+	 * Same as SearchQuery, but the games are ranked and only one page of them is returned.
+	 * Games matching more tags of the query rank higher, direct matches rank higher than
+	 * games found through the ontology, and the metacritic score counts with MetaScoreWeight.
+	 * Pages can be requested by offset, or by the cursor of the previous page,
+	 * which stays correct as long as the data does not change.
+	 * 
+	 * @param query A tag, or a query, see TagQuery for the syntax.
+	 * @param expandSearch If true every tag is expanded with its descendants in the ontology.
+	 * @param offset Number of best games to skip, ignored if cursor is given.
+	 * @param limit Max number of games on the page.
+	 * @param cursor The next cursor of the previous page, or null.
+	 * @return The page of games, best first.
+	 * @throws IllegalArgumentException If the query or the cursor is not well formed, or the offset is negative.
+	 */
+	public ResultPage SearchRanked(String query, boolean expandSearch, int offset, int limit, String cursor) {
+		return SearchRanked(query, expandSearch, null, offset, limit, cursor);
+	}
+	
+	/**
+	 * Same as SearchRanked, but only the games passing the filter are ranked.
+	 * Without a query every game passing the filter is ranked by its metacritic score.
+	 * 
+	 * @param query A tag, or a query, see TagQuery for the syntax, or null to rank every game.
+	 * @param expandSearch If true every tag is expanded with its descendants in the ontology.
+	 * @param filter The filter of the games, null for no filter.
+	 * @param offset Number of best games to skip, ignored if cursor is given.
+	 * @param limit Max number of games on the page.
+	 * @param cursor The next cursor of the previous page, or null.
+	 * @return The page of games, best first.
+	 * @throws IllegalArgumentException If the query or the cursor is not well formed, or the offset is negative.
+	 */
+	public ResultPage SearchRanked(String query, boolean expandSearch, GameFilter filter, int offset, int limit, String cursor) {
+		long start = System.nanoTime();
+		checkOntologyFile();
+		TagIndex index = dm.getTagIndex();
+		RoaringBitmap games = index.getAllGames();
+		List<Map<String, Integer>> terms = new ArrayList<>();
+		if (query != null) {
+			TagQuery parsed = TagQuery.parse(query);
+			games = evaluate(parsed, expandSearch, index);
+			for (String term : parsed.getPositiveTerms())
+				terms.add(expandTerm(term, expandSearch));
+		}
+		if (filter != null && !filter.isEmpty())
+			games = index.filter(games, filter);
+		ResultPage result = new SearchRanker(index, terms).rank(games, offset, limit, cursor);
+		recordQuery("search.ranked", start);
+		return result;
+	}
+	
+	private void recordQuery(String timer, long start) {
+		long nanos = System.nanoTime() - start;
+		firstQueryNanos.compareAndSet(-1, nanos);
+		Metrics.timer(timer).update(nanos, TimeUnit.NANOSECONDS);
+	}
+	
+	private RoaringBitmap evaluate(TagQuery query, boolean expandSearch, TagIndex index) {
+		return query.evaluate(tag -> {
+			if (!expandSearch)
+				return index.getGames(tag);
+			Map<String, Integer> tags = expandTerm(tag, true);
+			RoaringBitmap[] bitmaps = new RoaringBitmap[tags.size()];
+			int i = 0;
+			for (String expanded : tags.keySet())
+				bitmaps[i++] = index.getGames(expanded);
+			return FastAggregation.or(bitmaps);
+		}, index.getAllGames());
+	}
+	
+	/**
+	 * @return The tag and, if expandSearch is true, its descendants in the ontology,
+	 * 		   mapped to their distance from the tag, nearest first.
+	 */
+	private Map<String, Integer> expandTerm(String tag, boolean expandSearch) {
+		Map<String, Integer> result = new LinkedHashMap<>();
+		result.put(tag, 0);
+		if (expandSearch) {
+			String iri = ontologyNamespace + TagIndex.normalize(tag);
+			for (Map.Entry<String, Integer> descendant : subClassIndex.getSubClassDistances(iri).entrySet())
+				result.putIfAbsent(descendant.getKey(), descendant.getValue());
 		}
-		
 		return result;
 	}
 }
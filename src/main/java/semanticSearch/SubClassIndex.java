@@ -0,0 +1,340 @@
+package semanticSearch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+/**
+ * Precomputed subclass hierarchy of an ontology.
+ * Every class gets an int id, and the direct subclasses and all descendants
+ * of each class are stored by id, so looking up the subclasses of a class
+ * does not need the reasoner. The descendants are Roaring bitmaps, which stay small
+ * for the runs of consecutive ids a subtree usually gets, and are computed without recursion,
+ * so hierarchies tens of thousands of levels deep can be indexed.
+ * The index can be saved to a compact binary snapshot and loaded back
+ * without parsing or classifying the ontology again.
+ */
+public class SubClassIndex {
+
+	private static final int SnapshotMagic = 0x4B4D4958;
+	private static final int SnapshotVersion = 2;
+
+	private final Map<String, Integer> ids;
+	private final String[] iris;
+	private final String[] names;
+	private final int[][] children;
+	private final RoaringBitmap[] descendants;
+	private final List<List<String>> directNames;
+
+	/**
+	 * Creates an index from already computed data.
+	 * 
+	 * @param iris The full IRI of each class, the index in the array is the id of the class.
+	 * @param names The name (IRI fragment) of each class.
+	 * @param children The ids of the direct subclasses of each class.
+	 */
+	public SubClassIndex(String[] iris, String[] names, int[][] children) {
+		this(iris, names, children, null);
+	}
+
+	private SubClassIndex(String[] iris, String[] names, int[][] children, RoaringBitmap[] closure) {
+		this.iris = iris;
+		this.names = names;
+		this.children = children;
+		ids = new HashMap<>(iris.length * 2);
+		for (int i = 0; i < iris.length; i++)
+			ids.put(iris[i], i);
+
+		descendants = closure != null ? closure : computeDescendants(children);
+
+		directNames = new ArrayList<>(names.length);
+		for (int i = 0; i < names.length; i++)
+			directNames.add(toNames(RoaringBitmap.bitmapOfUnordered(children[i].clone())));
+	}
+
+	/**
+	 * Builds the index by asking the reasoner for the direct subclasses of every class
+	 * in the ontology once. Built in classes (owl:Thing, owl:Nothing) are left out.
+	 * 
+	 * @param ontology The ontology containing the classes.
+	 * @param reasoner A reasoner created for the ontology.
+	 * @return The index of the classified hierarchy.
+	 */
+	public static SubClassIndex build(OWLOntology ontology, OWLReasoner reasoner) {
+		List<OWLClass> classes = new ArrayList<>();
+		ontology.classesInSignature().filter(c -> !c.isBuiltIn()).forEach(classes::add);
+
+		Map<OWLClass, Integer> classIds = new HashMap<>(classes.size() * 2);
+		String[] iris = new String[classes.size()];
+		String[] names = new String[classes.size()];
+		for (int i = 0; i < classes.size(); i++) {
+			OWLClass cls = classes.get(i);
+			classIds.put(cls, i);
+			iris[i] = cls.getIRI().toString();
+			names[i] = cls.getIRI().getFragment();
+		}
+
+		int[][] children = new int[classes.size()][];
+		for (int i = 0; i < classes.size(); i++) {
+			children[i] = reasoner.getSubClasses(classes.get(i), true).entities()
+					.map(classIds::get)
+					.filter(id -> id != null)
+					.mapToInt(Integer::intValue)
+					.toArray();
+		}
+		return new SubClassIndex(iris, names, children);
+	}
+
+	/**
+	 * Writes the index to a binary snapshot file: the IRI and name of every class,
+	 * the direct subclasses and the descendant closure of every class.
+	 * The file is written next to the target and renamed, so a reader never sees a partial file.
+	 * 
+	 * @param file The snapshot file, replaced if it exists.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(SnapshotMagic);
+			out.writeInt(SnapshotVersion);
+			out.writeInt(names.length);
+			for (int i = 0; i < names.length; i++) {
+				writeString(out, iris[i]);
+				writeString(out, names[i]);
+			}
+			for (int[] direct : children) {
+				out.writeInt(direct.length);
+				for (int child : direct)
+					out.writeInt(child);
+			}
+			for (RoaringBitmap closure : descendants) {
+				out.writeInt(closure.serializedSizeInBytes());
+				closure.serialize(out);
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads an index saved by save. The file is memory mapped and read in one pass,
+	 * nothing is recomputed.
+	 * 
+	 * @param file The snapshot file.
+	 * @return The index stored in the file.
+	 * @throws IOException If the file cannot be read or is not a valid snapshot.
+	 */
+	public static SubClassIndex load(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != SnapshotMagic)
+				throw new IOException("Not an ontology snapshot: " + file);
+			int version = buffer.getInt();
+			if (version != SnapshotVersion)
+				throw new IOException("Unsupported snapshot version " + version + ": " + file);
+			int count = buffer.getInt();
+			String[] iris = new String[count];
+			String[] names = new String[count];
+			for (int i = 0; i < count; i++) {
+				iris[i] = readString(buffer);
+				names[i] = readString(buffer);
+			}
+			int[][] children = new int[count][];
+			for (int i = 0; i < count; i++) {
+				children[i] = new int[buffer.getInt()];
+				buffer.asIntBuffer().get(children[i]);
+				buffer.position(buffer.position() + children[i].length * 4);
+			}
+			RoaringBitmap[] closure = new RoaringBitmap[count];
+			for (int i = 0; i < count; i++) {
+				int size = buffer.getInt();
+				ByteBuffer serialized = buffer.slice();
+				serialized.limit(size);
+				closure[i] = new ImmutableRoaringBitmap(serialized).toRoaringBitmap();
+				buffer.position(buffer.position() + size);
+			}
+			return new SubClassIndex(iris, names, children, closure);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+			throw new IOException("Truncated ontology snapshot: " + file, e);
+		}
+	}
+
+	/**
+	 * @param iri The full IRI of a class.
+	 * @return The id of the class, or -1 if the class is not in the index.
+	 */
+	public int getId(String iri) {
+		Integer id = ids.get(iri);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @return The number of classes in the index.
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @param id Id of a class.
+	 * @return The name (IRI fragment) of the class.
+	 */
+	public String getName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @param id Id of a class.
+	 * @return The ids of the direct subclasses of the class, must not be modified.
+	 */
+	public int[] getChildren(int id) {
+		return children[id];
+	}
+
+	/**
+	 * @param id Id of a class.
+	 * @return The ids of every descendant of the class, must not be modified.
+	 */
+	public RoaringBitmap getDescendants(int id) {
+		return descendants[id];
+	}
+
+	/**
+	 * Returns the names of the descendants of the class with the given IRI.
+	 * 
+	 * @param iri The full IRI of the class.
+	 * @param direct If true only the direct subclasses are returned.
+	 * @return An unmodifiable list of names, empty if the class is not in the index.
+	 */
+	public List<String> getSubClasses(String iri, boolean direct) {
+		Integer id = ids.get(iri);
+		if (id == null)
+			return Collections.emptyList();
+		// the names of all descendants are built on demand, keeping them for every class grows with the square of a deep hierarchy
+		return direct ? directNames.get(id) : toNames(descendants[id]);
+	}
+
+	/**
+	 * Returns the descendants of the class with the given IRI with their distance from it:
+	 * 1 for the direct subclasses, 2 for their subclasses and so on.
+	 * A class reachable on several paths gets the shortest distance.
+	 * 
+	 * @param iri The full IRI of the class.
+	 * @return The names of the descendants mapped to their distance, nearest first,
+	 * 		   empty if the class is not in the index.
+	 */
+	public Map<String, Integer> getSubClassDistances(String iri) {
+		Map<String, Integer> result = new LinkedHashMap<>();
+		Integer id = ids.get(iri);
+		if (id == null)
+			return result;
+		// breadth first, the queue holds the classes in the order of their distance
+		int[] queue = new int[descendants[id].getCardinality() + 1];
+		int[] distances = new int[queue.length];
+		RoaringBitmap seen = RoaringBitmap.bitmapOf(id);
+		queue[0] = id;
+		int head = 0, tail = 1;
+		while (head < tail) {
+			int parent = queue[head];
+			int distance = distances[head++] + 1;
+			for (int child : children[parent]) {
+				if (seen.checkedAdd(child)) {
+					if (tail == queue.length) {
+						queue = Arrays.copyOf(queue, tail * 2);
+						distances = Arrays.copyOf(distances, tail * 2);
+					}
+					queue[tail] = child;
+					distances[tail++] = distance;
+					result.put(names[child], distance);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the descendants of every class in post order with an explicit stack,
+	 * each class after all of its subclasses, so each set is the union of the sets of the children.
+	 * A child still on the stack belongs to a cycle of equivalent classes, it is added without its descendants,
+	 * the same as the other classes of the cycle get them.
+	 */
+	private static RoaringBitmap[] computeDescendants(int[][] children) {
+		int count = children.length;
+		RoaringBitmap[] result = new RoaringBitmap[count];
+		BitSet onStack = new BitSet(count);
+		int[] stack = new int[count];
+		int[] nextChild = new int[count];
+		for (int root = 0; root < count; root++) {
+			if (result[root] != null || onStack.get(root))
+				continue;
+			int depth = 0;
+			stack[depth++] = root;
+			onStack.set(root);
+			while (depth > 0) {
+				int id = stack[depth - 1];
+				if (nextChild[id] < children[id].length) {
+					int child = children[id][nextChild[id]++];
+					if (result[child] == null && !onStack.get(child)) {
+						stack[depth++] = child;
+						onStack.set(child);
+					}
+					continue;
+				}
+				RoaringBitmap closure = new RoaringBitmap();
+				for (int child : children[id]) {
+					closure.add(child);
+					if (result[child] != null)
+						closure.or(result[child]);
+				}
+				closure.remove(id);
+				closure.runOptimize();
+				result[id] = closure;
+				onStack.clear(id);
+				depth--;
+			}
+		}
+		return result;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(MappedByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private List<String> toNames(RoaringBitmap classes) {
+		List<String> result = new ArrayList<>(classes.getCardinality());
+		classes.forEach((int i) -> result.add(names[i]));
+		return Collections.unmodifiableList(result);
+	}
+}
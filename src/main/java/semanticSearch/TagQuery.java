@@ -0,0 +1,315 @@
+package semanticSearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * A boolean combination of tags, e.g. "Horror AND Multiplayer NOT Early_Access".
+ * 
+ * Operators, from the weakest binding: OR, AND, NOT. AND can be left out between terms,
+ * "A NOT B" means "A AND NOT B", and parentheses group. The operators are upper case,
+ * tags containing spaces or operator names can be quoted: "Free to Play".
+ * A query is evaluated over appid bitmaps, the games of each term are supplied by the caller,
+ * so the terms can be expanded with the ontology.
+ */
+public final class TagQuery {
+
+	private interface Node {
+		RoaringBitmap evaluate(Function<String, RoaringBitmap> terms, RoaringBitmap all);
+	}
+
+	private static final class Term implements Node {
+		final String tag;
+
+		Term(String tag) {
+			this.tag = tag;
+		}
+
+		@Override
+		public RoaringBitmap evaluate(Function<String, RoaringBitmap> terms, RoaringBitmap all) {
+			return terms.apply(tag);
+		}
+
+		@Override
+		public String toString() {
+			return tag.indexOf(' ') >= 0 || isOperator(tag) ? '"' + tag + '"' : tag;
+		}
+	}
+
+	private static final class Not implements Node {
+		final Node operand;
+
+		Not(Node operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		public RoaringBitmap evaluate(Function<String, RoaringBitmap> terms, RoaringBitmap all) {
+			return RoaringBitmap.andNot(all, operand.evaluate(terms, all));
+		}
+
+		@Override
+		public String toString() {
+			return "NOT " + operand;
+		}
+	}
+
+	private static final class And implements Node {
+		final List<Node> operands;
+
+		And(List<Node> operands) {
+			this.operands = operands;
+		}
+
+		/**
+		 * Intersects the positive operands first, then removes the negated ones,
+		 * so NOT never has to build the complement of a tag.
+		 */
+		@Override
+		public RoaringBitmap evaluate(Function<String, RoaringBitmap> terms, RoaringBitmap all) {
+			List<RoaringBitmap> included = new ArrayList<>();
+			List<RoaringBitmap> excluded = new ArrayList<>();
+			for (Node operand : operands) {
+				if (operand instanceof Not)
+					excluded.add(((Not) operand).operand.evaluate(terms, all));
+				else
+					included.add(operand.evaluate(terms, all));
+			}
+			RoaringBitmap result = included.isEmpty() ? all.clone()
+					: FastAggregation.and(included.toArray(new RoaringBitmap[0]));
+			for (RoaringBitmap exclude : excluded)
+				result.andNot(exclude);
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return join(operands, " AND ");
+		}
+	}
+
+	private static final class Or implements Node {
+		final List<Node> operands;
+
+		Or(List<Node> operands) {
+			this.operands = operands;
+		}
+
+		@Override
+		public RoaringBitmap evaluate(Function<String, RoaringBitmap> terms, RoaringBitmap all) {
+			RoaringBitmap[] bitmaps = new RoaringBitmap[operands.size()];
+			for (int i = 0; i < bitmaps.length; i++)
+				bitmaps[i] = operands.get(i).evaluate(terms, all);
+			return FastAggregation.or(bitmaps);
+		}
+
+		@Override
+		public String toString() {
+			return join(operands, " OR ");
+		}
+	}
+
+	private final Node root;
+	private final Set<String> terms;
+	private final Set<String> positiveTerms;
+
+	private TagQuery(Node root, Set<String> terms, Set<String> positiveTerms) {
+		this.root = root;
+		this.terms = Collections.unmodifiableSet(terms);
+		this.positiveTerms = Collections.unmodifiableSet(positiveTerms);
+	}
+
+	/**
+	 * Parses a query.
+	 * 
+	 * @param query The query text, e.g. "Horror AND (Multiplayer OR Co-op) NOT Early_Access".
+	 * @return The parsed query.
+	 * @throws IllegalArgumentException If the query is empty or not well formed.
+	 */
+	public static TagQuery parse(String query) {
+		Parser parser = new Parser(tokenize(query));
+		if (parser.tokens.isEmpty())
+			throw new IllegalArgumentException("Empty query");
+		Node root = parser.parseOr();
+		if (parser.pos < parser.tokens.size())
+			throw new IllegalArgumentException("Unexpected " + parser.tokens.get(parser.pos) + " in query: " + query);
+		return new TagQuery(root, parser.terms, parser.positiveTerms);
+	}
+
+	/**
+	 * Turns text typed by a user into a query. Text without operators, parentheses or quotes
+	 * is taken as one tag, so "Free to Play" stays a single tag instead of Free AND to AND Play.
+	 * 
+	 * @param input The text typed by the user.
+	 * @return The input itself if it uses the query syntax, otherwise the trimmed input quoted.
+	 */
+	public static String fromInput(String input) {
+		String trimmed = input.trim();
+		if (trimmed.isEmpty() || trimmed.indexOf('"') >= 0 || trimmed.indexOf('(') >= 0 || trimmed.indexOf(')') >= 0)
+			return input;
+		for (String word : trimmed.split("\\s+")) {
+			if (isOperator(word))
+				return input;
+		}
+		return '"' + trimmed + '"';
+	}
+
+	/**
+	 * @return The tags used in the query, in order of appearance.
+	 */
+	public Set<String> getTerms() {
+		return terms;
+	}
+
+	/**
+	 * @return The tags of the query that are not negated, a game matching the query
+	 * 		   may have any of these. Used to rank the results.
+	 */
+	public Set<String> getPositiveTerms() {
+		return positiveTerms;
+	}
+
+	/**
+	 * @return True if the query is a single tag without any operator.
+	 */
+	public boolean isSingleTerm() {
+		return root instanceof Term;
+	}
+
+	/**
+	 * Evaluates the query.
+	 * 
+	 * @param games Returns the appids of the games matching a term. The returned bitmaps are not modified.
+	 * @param all The appids of every game, NOT is relative to these.
+	 * @return The appids of the games matching the query, a new bitmap.
+	 */
+	public RoaringBitmap evaluate(Function<String, RoaringBitmap> games, RoaringBitmap all) {
+		RoaringBitmap result = root.evaluate(games, all);
+		// a single term returns the callers bitmap
+		return root instanceof Term ? result.clone() : result;
+	}
+
+	@Override
+	public String toString() {
+		return root.toString();
+	}
+
+	private static boolean isOperator(String token) {
+		return token.equals("AND") || token.equals("OR") || token.equals("NOT");
+	}
+
+	private static String join(List<Node> operands, String operator) {
+		StringBuilder sb = new StringBuilder("(");
+		for (int i = 0; i < operands.size(); i++) {
+			if (i > 0)
+				sb.append(operator);
+			sb.append(operands.get(i));
+		}
+		return sb.append(')').toString();
+	}
+
+	/**
+	 * Splits the query into words, quoted strings and parentheses.
+	 * Quoted strings are returned with their leading quote, so they are never operators.
+	 */
+	private static List<String> tokenize(String query) {
+		List<String> tokens = new ArrayList<>();
+		int i = 0;
+		while (i < query.length()) {
+			char c = query.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '(' || c == ')') {
+				tokens.add(String.valueOf(c));
+				i++;
+			} else if (c == '"') {
+				int end = query.indexOf('"', i + 1);
+				if (end < 0)
+					throw new IllegalArgumentException("Unclosed quote in query: " + query);
+				tokens.add(query.substring(i, end));
+				i = end + 1;
+			} else {
+				int start = i;
+				while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+						&& "()\"".indexOf(query.charAt(i)) < 0)
+					i++;
+				tokens.add(query.substring(start, i));
+			}
+		}
+		return tokens;
+	}
+
+	private static final class Parser {
+		final List<String> tokens;
+		final Set<String> terms = new LinkedHashSet<>();
+		final Set<String> positiveTerms = new LinkedHashSet<>();
+		int pos;
+		int negations;
+
+		Parser(List<String> tokens) {
+			this.tokens = tokens;
+		}
+
+		Node parseOr() {
+			List<Node> operands = new ArrayList<>();
+			operands.add(parseAnd());
+			while (accept("OR"))
+				operands.add(parseAnd());
+			return operands.size() == 1 ? operands.get(0) : new Or(operands);
+		}
+
+		Node parseAnd() {
+			List<Node> operands = new ArrayList<>();
+			operands.add(parseUnary());
+			while (pos < tokens.size() && !peek("OR") && !peek(")")) {
+				accept("AND");
+				operands.add(parseUnary());
+			}
+			return operands.size() == 1 ? operands.get(0) : new And(operands);
+		}
+
+		Node parseUnary() {
+			if (accept("NOT")) {
+				negations++;
+				Node operand = parseUnary();
+				negations--;
+				return new Not(operand);
+			}
+			if (accept("(")) {
+				Node inner = parseOr();
+				if (!accept(")"))
+					throw new IllegalArgumentException("Missing ) in query");
+				return inner;
+			}
+			if (pos >= tokens.size())
+				throw new IllegalArgumentException("Missing tag at the end of the query");
+			String token = tokens.get(pos);
+			if (isOperator(token) || token.equals(")"))
+				throw new IllegalArgumentException("Expected a tag instead of " + token);
+			pos++;
+			String tag = token.startsWith("\"") ? token.substring(1) : token;
+			terms.add(tag);
+			if (negations % 2 == 0)
+				positiveTerms.add(tag);
+			return new Term(tag);
+		}
+
+		boolean peek(String token) {
+			return pos < tokens.size() && tokens.get(pos).equals(token);
+		}
+
+		boolean accept(String token) {
+			if (!peek(token))
+				return false;
+			pos++;
+			return true;
+		}
+	}
+}
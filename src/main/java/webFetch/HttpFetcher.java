@@ -0,0 +1,279 @@
+package webFetch;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Timer;
+
+import metrics.Metrics;
+
+/**
+ * Sends the GET requests of the crawlers over a shared pool of keep-alive connections.
+ * Responses are requested gzip or deflate compressed and decompressed transparently.
+ * Connection errors, timeouts and 429 or 5xx responses are retried with exponential backoff,
+ * every attempt goes through the RequestThrottle.
+ * The latency of every attempt is recorded in a timer per endpoint, named "http." followed by the endpoint.
+ * With a ResponseCache set, bodies are stored on disk and revalidated with
+ * If-None-Match and If-Modified-Since instead of being downloaded again.
+ */
+public class HttpFetcher implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(HttpFetcher.class);
+
+	/**
+	 * Timeout for opening a connection, in ms. Default value is 10 seconds.
+	 */
+	public static int ConnectTimeoutMillis = 10000;
+	/**
+	 * Max time to wait for data on an open connection, in ms. Default value is 30 seconds.
+	 */
+	public static int ReadTimeoutMillis = 30000;
+	/**
+	 * Number of times a failed request is repeated before giving up. Default value is 4.
+	 */
+	public static int MaxRetries = 4;
+	/**
+	 * Wait before the first retry in ms, doubled for each further retry. Default value is 500.
+	 */
+	public static long InitialBackoffMillis = 500;
+	/**
+	 * Upper limit of the wait between retries in ms, also applies to Retry-After. Default value is 30 seconds.
+	 */
+	public static long MaxBackoffMillis = 30000;
+	/**
+	 * Max number of unread bytes read and dropped after a reader stopped early, e.g. StoreTagExtractor
+	 * after the tag block, so the connection can go back to the keep-alive pool. A longer rest is not read,
+	 * the connection is closed instead and the next request to the host opens a new one.
+	 * Default value is 1 MB, more than the decompressed size of a store page.
+	 */
+	public static int MaxDrainBytes = 1 << 20;
+
+	/**
+	 * Reads the body of a successful response. The stream does not have to be read to the end,
+	 * at most MaxDrainBytes of the rest are read after the reader returns to keep the connection,
+	 * a connection with more unread data is closed instead of being reused.
+	 */
+	public interface ResponseReader<T> {
+		T read(InputStream is) throws IOException;
+	}
+
+	private final CloseableHttpClient client;
+	private final RequestThrottle throttle;
+	private final ConcurrentMap<String, Timer> latencies = new ConcurrentHashMap<>();
+	private ResponseCache cache;
+
+	/**
+	 * @param throttle Limits the request rate and the connections per host, shared by every request.
+	 * @param maxConnectionsPerHost Max number of pooled connections to a single host.
+	 */
+	public HttpFetcher(RequestThrottle throttle, int maxConnectionsPerHost) {
+		this.throttle = throttle;
+		int perHost = maxConnectionsPerHost > 0 ? maxConnectionsPerHost : 20;
+		PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+		pool.setDefaultMaxPerRoute(perHost);
+		pool.setMaxTotal(perHost * 4);
+		RequestConfig config = RequestConfig.custom()
+				.setConnectTimeout(ConnectTimeoutMillis)
+				.setConnectionRequestTimeout(ConnectTimeoutMillis)
+				.setSocketTimeout(ReadTimeoutMillis)
+				.build();
+		client = HttpClients.custom()
+				.useSystemProperties()
+				.setConnectionManager(pool)
+				.setDefaultRequestConfig(config)
+				// one immediate retry for keep-alive connections closed by the server, the rest is retried with backoff
+				.setRetryHandler(new DefaultHttpRequestRetryHandler(1, false))
+				.build();
+	}
+
+	/**
+	 * Sets the cache used by every later request. Cached bodies are read from memory,
+	 * so the reader always gets the whole body, even if it stops reading early.
+	 * 
+	 * @param cache The cache, null to always use the network.
+	 * @return This fetcher.
+	 */
+	public HttpFetcher setCache(ResponseCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	public ResponseCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Downloads the given url and passes the body to the reader.
+	 * 
+	 * @param endpoint Name the latency of the request is recorded under, e.g. "appdetails".
+	 * @param address The url to download.
+	 * @param reader Reads the response body. If it throws an IOException the request is retried.
+	 * @return The value returned by the reader.
+	 * @throws IOException If the request still fails after MaxRetries retries, or the response
+	 * 		   has an error status that is not worth retrying.
+	 * @throws InterruptedException If the thread is interrupted while waiting for the throttle or a retry.
+	 */
+	public <T> T fetch(String endpoint, String address, ResponseReader<T> reader)
+			throws IOException, InterruptedException {
+		URL url = new URL(address);
+		ResponseCache.Entry cached = null;
+		if (cache != null) {
+			cached = cache.get(address);
+			if (cached != null && cache.isFresh(cached)) {
+				cache.recordHit(false);
+				return reader.read(new ByteArrayInputStream(cached.getBody()));
+			}
+			if (cache.isOffline())
+				throw new FileNotFoundException("Not in the offline cache: " + address);
+		}
+		Timer latency = latencies.computeIfAbsent(endpoint, e -> Metrics.timer("http", e));
+		for (int attempt = 0;; attempt++) {
+			IOException failure;
+			throttle.acquire(url);
+			long start = System.nanoTime();
+			try (CloseableHttpResponse response = client.execute(newRequest(address, cached))) {
+				int status = response.getStatusLine().getStatusCode();
+				HttpEntity entity = response.getEntity();
+				if (status == 304 && cached != null) {
+					EntityUtils.consume(entity);
+					refreshCached(address, cached);
+					cache.recordHit(true);
+					return reader.read(new ByteArrayInputStream(cached.getBody()));
+				}
+				if (status < 200 || status >= 300 || entity == null)
+					throw new HttpStatusException(status, address,
+							parseRetryAfter(response.getFirstHeader(HttpHeaders.RETRY_AFTER)));
+				if (cache == null) {
+					InputStream content = entity.getContent();
+					T value = reader.read(content);
+					drain(content);
+					return value;
+				}
+
+				byte[] body = EntityUtils.toByteArray(entity);
+				putCached(address, response, body);
+				cache.recordMiss();
+				return reader.read(new ByteArrayInputStream(body));
+			} catch (HttpStatusException e) {
+				if (!e.isRetryable())
+					throw e;
+				failure = e;
+			} catch (IOException e) {
+				failure = e;
+			} finally {
+				latency.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				throttle.release(url);
+			}
+
+			if (attempt >= MaxRetries)
+				throw failure;
+			logger.warn("Retrying {}: {}", address, failure.getMessage());
+			TimeUnit.MILLISECONDS.sleep(backoff(attempt, failure));
+		}
+	}
+
+	/**
+	 * @return The latency timers of the endpoints requested by this fetcher, by endpoint name.
+	 */
+	public Map<String, Timer> getLatencies() {
+		return new TreeMap<>(latencies);
+	}
+
+	@Override
+	public void close() throws IOException {
+		client.close();
+	}
+
+	/**
+	 * Writing the cache is best effort: a full or read only cache directory must not
+	 * make the downloaded body count as a failed request and be downloaded again.
+	 */
+	private void putCached(String address, CloseableHttpResponse response, byte[] body) {
+		try {
+			cache.put(address, headerValue(response, HttpHeaders.ETAG), headerValue(response, HttpHeaders.LAST_MODIFIED), body);
+		} catch (IOException e) {
+			logger.warn("Cannot cache {}: {}", address, e.getMessage());
+		}
+	}
+
+	private void refreshCached(String address, ResponseCache.Entry cached) {
+		try {
+			cache.refresh(address, cached);
+		} catch (IOException e) {
+			logger.warn("Cannot refresh the cached {}: {}", address, e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the rest of the body, up to MaxDrainBytes. A body read to its end releases the connection
+	 * to the pool when the response is closed, otherwise the connection is closed with it.
+	 */
+	private static void drain(InputStream content) {
+		byte[] buffer = new byte[8192];
+		long left = MaxDrainBytes;
+		try {
+			int read;
+			while (left > 0 && (read = content.read(buffer, 0, (int) Math.min(buffer.length, left))) >= 0)
+				left -= read;
+		} catch (IOException e) {
+			// the value is already read, only the connection is lost
+			logger.debug("Cannot read the rest of the response: {}", e.getMessage());
+		}
+	}
+
+	private static HttpGet newRequest(String address, ResponseCache.Entry cached) {
+		HttpGet request = new HttpGet(address);
+		if (cached != null && cached.getEtag() != null)
+			request.setHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+		if (cached != null && cached.getLastModified() != null)
+			request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+		return request;
+	}
+
+	private static String headerValue(CloseableHttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
+	private static long backoff(int attempt, IOException failure) {
+		long retryAfter = failure instanceof HttpStatusException
+				? ((HttpStatusException) failure).getRetryAfterMillis() : -1;
+		if (retryAfter >= 0)
+			return Math.min(retryAfter, MaxBackoffMillis);
+		long backoff = Math.min(InitialBackoffMillis << Math.min(attempt, 20), MaxBackoffMillis);
+		return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+	}
+
+	private static long parseRetryAfter(Header header) {
+		if (header == null)
+			return -1;
+		try {
+			return TimeUnit.SECONDS.toMillis(Long.parseLong(header.getValue().trim()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package webFetch;
+
+import java.io.IOException;
+
+/**
+ * Thrown by HttpFetcher when the server answers with an error status.
+ */
+public class HttpStatusException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int status;
+	private final long retryAfterMillis;
+
+	/**
+	 * @param status The http status code of the response.
+	 * @param address The requested url.
+	 * @param retryAfterMillis The wait requested by the Retry-After header, -1 if there was none.
+	 */
+	public HttpStatusException(int status, String address, long retryAfterMillis) {
+		super("HTTP " + status + " from " + address);
+		this.status = status;
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+
+	/**
+	 * @return True for 429 Too Many Requests and 5xx server errors, which may succeed when repeated.
+	 */
+	public boolean isRetryable() {
+		return status == 429 || status >= 500;
+	}
+}
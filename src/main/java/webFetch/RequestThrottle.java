@@ -0,0 +1,80 @@
+package webFetch;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class RequestThrottle {
+
+	private final long intervalNanos;
+	private final int maxConnectionsPerHost;
+	private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<>();
+	private long nextSlot;
+
+	/**
+	 * Creates a throttle shared by every thread sending requests through it.
+	 * 
+	 * @param requestsPerSecond Max number of requests started per second, across all hosts.
+	 * 		  Zero or less means no rate limit.
+	 * @param maxConnectionsPerHost Max number of requests open at the same time to a single host.
+	 * 		  Zero or less means no limit.
+	 */
+	public RequestThrottle(double requestsPerSecond, int maxConnectionsPerHost) {
+		this.intervalNanos = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+		this.nextSlot = System.nanoTime();
+	}
+
+	/**
+	 * Blocks until a request to the given url is allowed to start.
+	 * Every successful call must be paired with a call to release(url).
+	 * 
+	 * @param url The url the request will be sent to.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void acquire(URL url) throws InterruptedException {
+		Semaphore host = hostPermits(url);
+		if (host != null)
+			host.acquire();
+		try {
+			waitForSlot();
+		} catch (InterruptedException e) {
+			if (host != null)
+				host.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Frees the host connection taken by acquire(url).
+	 * 
+	 * @param url The url passed to acquire.
+	 */
+	public void release(URL url) {
+		Semaphore host = hostPermits(url);
+		if (host != null)
+			host.release();
+	}
+
+	private Semaphore hostPermits(URL url) {
+		if (maxConnectionsPerHost <= 0)
+			return null;
+		return hosts.computeIfAbsent(url.getHost(), h -> new Semaphore(maxConnectionsPerHost, true));
+	}
+
+	private void waitForSlot() throws InterruptedException {
+		if (intervalNanos == 0)
+			return;
+		long slot;
+		synchronized (this) {
+			long now = System.nanoTime();
+			slot = Math.max(now, nextSlot);
+			nextSlot = slot + intervalNanos;
+		}
+		long wait = slot - System.nanoTime();
+		if (wait > 0)
+			TimeUnit.NANOSECONDS.sleep(wait);
+	}
+}
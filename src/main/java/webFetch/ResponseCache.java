@@ -0,0 +1,286 @@
+package webFetch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import metrics.Metrics;
+
+/**
+ * Keeps downloaded response bodies on disk, gzip compressed, one file per url.
+ * The file name is the SHA-256 hash of the url. Next to the body the ETag and Last-Modified
+ * headers are stored, so HttpFetcher can revalidate an entry instead of downloading it again.
+ * When the files grow over the size limit the least recently used ones are deleted.
+ * In offline mode every request is answered from the cache, the network is never used.
+ */
+public class ResponseCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+	private static final int FormatVersion = 1;
+
+	/**
+	 * A cached response.
+	 */
+	public static final class Entry {
+		private final String etag;
+		private final String lastModified;
+		private final long storedAt;
+		private final byte[] body;
+
+		Entry(String etag, String lastModified, long storedAt, byte[] body) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.storedAt = storedAt;
+			this.body = body;
+		}
+
+		/**
+		 * @return The ETag header of the response, null if it had none.
+		 */
+		public String getEtag() {
+			return etag;
+		}
+
+		/**
+		 * @return The Last-Modified header of the response, null if it had none.
+		 */
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * @return When the response was downloaded or last revalidated, in epoch ms.
+		 */
+		public long getStoredAt() {
+			return storedAt;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+	}
+
+	private final File dir;
+	private final long maxBytes;
+	private final long maxAgeMillis;
+	private final boolean offline;
+	private final ConcurrentMap<String, Long> sizes = new ConcurrentHashMap<>();
+	private final AtomicLong totalBytes = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong revalidations = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Opens the cache in the given directory, the entries already there are kept.
+	 * 
+	 * @param dir Directory of the cache files, created if missing.
+	 * @param maxBytes Max total size of the files, zero or less means no limit.
+	 * @param maxAgeMillis Entries younger than this are used without revalidation,
+	 * 		  zero means every entry is revalidated.
+	 * @param offline If true the network is never used, uncached urls fail.
+	 * @throws IOException If the directory cannot be created.
+	 */
+	public ResponseCache(File dir, long maxBytes, long maxAgeMillis, boolean offline) throws IOException {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		this.maxAgeMillis = maxAgeMillis;
+		this.offline = offline;
+		Files.createDirectories(dir.toPath());
+		File[] files = dir.listFiles((d, name) -> name.endsWith(".gz"));
+		for (File file : files) {
+			sizes.put(file.getName(), file.length());
+			totalBytes.addAndGet(file.length());
+		}
+		Metrics.hitRatio("http.cache.hitRatio", hits::get, misses::get);
+	}
+
+	public boolean isOffline() {
+		return offline;
+	}
+
+	/**
+	 * @param entry An entry returned by get.
+	 * @return True if the entry can be used without asking the server.
+	 */
+	public boolean isFresh(Entry entry) {
+		return offline || System.currentTimeMillis() - entry.storedAt < maxAgeMillis;
+	}
+
+	/**
+	 * @param url The requested url.
+	 * @return The cached response, null if the url is not cached or the file cannot be read.
+	 */
+	public Entry get(String url) {
+		File file = fileOf(url);
+		if (!file.isFile())
+			return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(new FileInputStream(file))))) {
+			if (in.readInt() != FormatVersion || !in.readUTF().equals(url))
+				return null;
+			String etag = readOptional(in);
+			String lastModified = readOptional(in);
+			long storedAt = in.readLong();
+			byte[] body = readRest(in);
+			file.setLastModified(System.currentTimeMillis());
+			return new Entry(etag, lastModified, storedAt, body);
+		} catch (IOException e) {
+			logger.warn("Unreadable cache entry for {}: {}", url, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Counts a request answered from the cache, either because the entry was fresh or because it was revalidated.
+	 * 
+	 * @param revalidated True if the server confirmed the entry with 304 Not Modified.
+	 */
+	void recordHit(boolean revalidated) {
+		hits.incrementAndGet();
+		if (revalidated)
+			revalidations.incrementAndGet();
+	}
+
+	/**
+	 * Counts a request whose body had to be downloaded.
+	 */
+	void recordMiss() {
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * Stores a response, replacing the previous one of the url.
+	 * Evicts the least recently used entries if the cache grows over its size limit.
+	 * 
+	 * @param url The requested url.
+	 * @param etag The ETag header of the response, may be null.
+	 * @param lastModified The Last-Modified header of the response, may be null.
+	 * @param body The decompressed body of the response.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void put(String url, String etag, String lastModified, byte[] body) throws IOException {
+		File file = fileOf(url);
+		File temp = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new GZIPOutputStream(new FileOutputStream(temp))))) {
+				out.writeInt(FormatVersion);
+				out.writeUTF(url);
+				writeOptional(out, etag);
+				writeOptional(out, lastModified);
+				out.writeLong(System.currentTimeMillis());
+				out.write(body);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+		Long previous = sizes.put(file.getName(), file.length());
+		totalBytes.addAndGet(file.length() - (previous == null ? 0 : previous));
+		if (maxBytes > 0 && totalBytes.get() > maxBytes)
+			evict();
+	}
+
+	/**
+	 * Marks the entry of the url as revalidated now, so it is fresh for maxAgeMillis again.
+	 * 
+	 * @param url The requested url.
+	 * @param entry The entry confirmed by the server.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void refresh(String url, Entry entry) throws IOException {
+		put(url, entry.etag, entry.lastModified, entry.body);
+	}
+
+	/**
+	 * Deletes the least recently used files until the cache is under 90% of its size limit.
+	 */
+	private synchronized void evict() {
+		if (totalBytes.get() <= maxBytes)
+			return;
+		List<File> files = new ArrayList<>();
+		for (String name : sizes.keySet())
+			files.add(new File(dir, name));
+		files.sort(Comparator.comparingLong(File::lastModified));
+		long target = maxBytes / 10 * 9;
+		for (File file : files) {
+			if (totalBytes.get() <= target)
+				break;
+			Long size = sizes.remove(file.getName());
+			if (size != null && file.delete()) {
+				totalBytes.addAndGet(-size);
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	public long getSizeBytes() {
+		return totalBytes.get();
+	}
+
+	public int getEntries() {
+		return sizes.size();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d entries, %d KB, %d hits (%d revalidated), %d misses, %d evictions",
+				getEntries(), getSizeBytes() / 1024, hits.get(), revalidations.get(), misses.get(), evictions.get());
+	}
+
+	private File fileOf(String url) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder(hash.length * 2 + 3);
+			for (byte b : hash)
+				name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			return new File(dir, name.append(".gz").toString());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private static byte[] readRest(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) >= 0)
+			out.write(buffer, 0, read);
+		return out.toByteArray();
+	}
+
+	private static String readOptional(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeOptional(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeUTF(value);
+	}
+}
@@ -0,0 +1,135 @@
+package databaseControl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import webFetch.HttpFetcher;
+import webFetch.RequestThrottle;
+import webFetch.StubServer;
+
+/**
+ * Syncs a memory store with a local StubServer imitating Steam. The app list starts with
+ * appIds Steam has no data for, so a sync that downloads them again never reaches the games.
+ */
+public class CatalogSyncTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private StubServer server;
+	private DatabaseManager manager;
+	private int maxDownload;
+	private int refreshPerRun;
+	private String checkpointPath;
+	private volatile int releasedAppid = -1;
+
+	@Before
+	public void setUp() throws Exception {
+		maxDownload = GameDownloader.MaxDownload;
+		refreshPerRun = CatalogSync.RefreshPerRun;
+		checkpointPath = CatalogSync.CheckpointPath;
+		GameDownloader.MaxDownload = 10;
+		CatalogSync.RefreshPerRun = 0;
+		CatalogSync.CheckpointPath = new File(folder.getRoot(), "sync.checkpoint").getPath();
+
+		// 1-9 answer success=false, 10 is delisted with 404, 11-15 are games
+		server = new StubServer()
+				.on("/ISteamApps/GetAppList/", (exchange, call) -> StubServer.respond(exchange, 200, appList(15)))
+				.on("/api/appdetails", (exchange, call) -> {
+					int appid = Integer.parseInt(exchange.getRequestURI().getQuery().substring("appids=".length()));
+					if (appid == 10)
+						StubServer.respond(exchange, 404, "not found");
+					else if (appid < 10 && appid != releasedAppid)
+						StubServer.respond(exchange, 200, "{\"" + appid + "\":{\"success\":false}}");
+					else
+						StubServer.respond(exchange, 200, "{\"" + appid + "\":{\"success\":true,\"data\":"
+								+ "{\"type\":\"game\",\"name\":\"Game " + appid + "\"}}}");
+				})
+				.on("/app/", (exchange, call) -> StubServer.respond(exchange, 200,
+						"<div class=\"glance_tags popular_tags\">\n<a href=\"https://store.steampowered.com/tags/en/Indie/\""
+								+ " class=\"app_tag\">Indie</a>\n</div>"));
+		manager = new DatabaseManager(new SailRepository(new MemoryStore()));
+	}
+
+	@After
+	public void tearDown() {
+		manager.close();
+		server.close();
+		GameDownloader.MaxDownload = maxDownload;
+		CatalogSync.RefreshPerRun = refreshPerRun;
+		CatalogSync.CheckpointPath = checkpointPath;
+	}
+
+	private static String appList(int games) {
+		StringBuilder sb = new StringBuilder("{\"applist\":{\"apps\":{\"app\":[");
+		for (int appid = 1; appid <= games; appid++)
+			sb.append(appid > 1 ? "," : "").append("{\"appid\":").append(appid).append("}");
+		return sb.append("]}}}").toString();
+	}
+
+	private void sync() throws Exception {
+		try (GameDownloader downloader = new GameDownloader(server.url("/ISteamApps/GetAppList/v0001/"),
+				server.url("/api/appdetails?appids="), server.url("/app/"),
+				new HttpFetcher(new RequestThrottle(0, 0), 4))) {
+			new CatalogSync(downloader, manager).run();
+		}
+	}
+
+	private List<Integer> requestedDetails(int from) {
+		List<Integer> result = new ArrayList<>();
+		List<StubServer.Request> requests = server.getRequests();
+		for (StubServer.Request request : requests.subList(from, requests.size())) {
+			if (request.getUri().startsWith("/api/appdetails"))
+				result.add(Integer.parseInt(request.getUri().substring("/api/appdetails?appids=".length())));
+		}
+		return result;
+	}
+
+	@Test
+	public void appsWithoutDataAreNotDownloadedAgain() throws Exception {
+		sync();
+		assertEquals(10, requestedDetails(0).size());
+		assertTrue(manager.getStoredAppids().isEmpty());
+
+		int before = server.getRequests().size();
+		sync();
+
+		Set<Integer> games = new HashSet<>();
+		for (int appid = 11; appid <= 15; appid++)
+			games.add(appid);
+		assertEquals(games, new HashSet<>(requestedDetails(before)));
+		assertEquals(games, manager.getStoredAppids());
+	}
+
+	@Test
+	public void appsWithoutDataAreRefreshedWithTheStoredGames() throws Exception {
+		sync();
+		sync();
+		GameDownloader.MaxDownload = 0;
+		CatalogSync.RefreshPerRun = 20;
+		releasedAppid = 3;
+		int before = server.getRequests().size();
+		sync();
+
+		Set<Integer> all = new HashSet<>();
+		for (int appid = 1; appid <= 15; appid++)
+			all.add(appid);
+		assertEquals(all, new HashSet<>(requestedDetails(before)));
+		assertTrue(manager.getStoredAppids().contains(3));
+		assertEquals(6, manager.getStoredAppids().size());
+	}
+}
@@ -0,0 +1,192 @@
+package databaseControl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import webFetch.HttpFetcher;
+import webFetch.HttpStatusException;
+import webFetch.RequestThrottle;
+import webFetch.StubServer;
+
+/**
+ * Crawls a local StubServer imitating the Steam app list, appdetails api and store pages.
+ * Every response is delayed by a random time, so the downloads finish out of order.
+ */
+public class CrawlEngineTest {
+
+	private static final int Games = 40;
+
+	private StubServer server;
+	private GameDownloader downloader;
+	private int crawlThreads;
+	private int maxRetries;
+	private volatile int failingAppid = -1;
+
+	@Before
+	public void setUp() throws Exception {
+		crawlThreads = GameDownloader.CrawlThreads;
+		maxRetries = HttpFetcher.MaxRetries;
+		GameDownloader.CrawlThreads = 8;
+		server = new StubServer()
+				.on("/ISteamApps/GetAppList/", (exchange, call) -> StubServer.respond(exchange, 200, appList()))
+				.on("/api/appdetails", (exchange, call) -> {
+					int appid = Integer.parseInt(exchange.getRequestURI().getQuery().substring("appids=".length()));
+					randomDelay();
+					if (appid == failingAppid)
+						StubServer.respond(exchange, 503, "busy");
+					else
+						StubServer.respond(exchange, 200, appDetails(appid));
+				})
+				.on("/app/", (exchange, call) -> {
+					int appid = Integer.parseInt(exchange.getRequestURI().getPath().substring("/app/".length()));
+					randomDelay();
+					StubServer.respond(exchange, 200, storePage(appid));
+				});
+	}
+
+	@After
+	public void tearDown() {
+		if (downloader != null)
+			downloader.close();
+		server.close();
+		GameDownloader.CrawlThreads = crawlThreads;
+		HttpFetcher.MaxRetries = maxRetries;
+	}
+
+	private GameDownloader newDownloader(double requestsPerSecond, int maxConnectionsPerHost) {
+		downloader = new GameDownloader(server.url("/ISteamApps/GetAppList/v0001/"),
+				server.url("/api/appdetails?appids="), server.url("/app/"),
+				new HttpFetcher(new RequestThrottle(requestsPerSecond, maxConnectionsPerHost), maxConnectionsPerHost));
+		return downloader;
+	}
+
+	private static String appList() {
+		StringBuilder sb = new StringBuilder("{\"applist\":{\"apps\":{\"app\":[");
+		for (int appid = 1; appid <= Games; appid++)
+			sb.append(appid > 1 ? "," : "").append("{\"appid\":").append(appid).append(",\"name\":\"Game ").append(appid).append("\"}");
+		return sb.append("]}}}").toString();
+	}
+
+	/**
+	 * Every fifth app is a dlc, its store page is not requested.
+	 */
+	private static String appDetails(int appid) {
+		String type = appid % 5 == 0 ? "dlc" : "game";
+		return "{\"" + appid + "\":{\"success\":true,\"data\":{\"type\":\"" + type + "\",\"name\":\"Game " + appid
+				+ "\",\"metacritic\":{\"score\":" + (50 + appid) + "}}}}";
+	}
+
+	private static String storePage(int appid) {
+		return "<html><body>\n<div class=\"glance_tags popular_tags\" data-appid=\"" + appid + "\">\n"
+				+ "<a href=\"https://store.steampowered.com/tags/en/Indie/\" class=\"app_tag\" style=\"display: none;\">Indie</a>\n"
+				+ "<a href=\"https://store.steampowered.com/tags/en/Tag" + appid + "/\" class=\"app_tag\">Tag " + appid + "</a>\n"
+				+ "</div>\n<p>rest of the page</p>\n</body></html>";
+	}
+
+	private static void randomDelay() throws InterruptedException {
+		Thread.sleep(ThreadLocalRandom.current().nextInt(5, 40));
+	}
+
+	@Test
+	public void resultsComeBackInAppidOrder() throws Exception {
+		newDownloader(0, 0);
+		int[] appids = downloader.GetAppids();
+		assertEquals(Games, appids.length);
+		// a shuffled order, so the result order cannot come from sorting
+		List<Integer> shuffled = new ArrayList<>();
+		for (int appid : appids)
+			shuffled.add(appid);
+		Collections.shuffle(shuffled);
+		int[] requested = shuffled.stream().mapToInt(Integer::intValue).toArray();
+
+		List<Integer> order = new ArrayList<>();
+		downloader.StreamGameData(requested, (appid, triples) -> {
+			order.add(appid);
+			for (GameTriple triple : triples)
+				assertEquals(appid.intValue(), triple.getAppid());
+			long tags = triples.stream().filter(t -> t.getProperty() == GameProperty.TAG).count();
+			assertEquals("Tags of " + appid, appid % 5 == 0 ? 0 : 2, tags);
+		});
+
+		assertArrayEquals(requested, order.stream().mapToInt(Integer::intValue).toArray());
+		assertTrue("Downloads were not concurrent", server.getMaxConcurrent() > 2);
+	}
+
+	@Test
+	public void collectedTriplesFollowAppidOrder() throws Exception {
+		newDownloader(0, 0);
+		int[] appids = { 7, 3, 12, 1, 9, 4 };
+
+		List<GameTriple> triples = downloader.DownloadGameData(appids);
+
+		List<Integer> order = new ArrayList<>();
+		for (GameTriple triple : triples) {
+			if (order.isEmpty() || order.get(order.size() - 1) != triple.getAppid())
+				order.add(triple.getAppid());
+		}
+		assertArrayEquals(appids, order.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	@Test
+	public void failedGamesKeepTheirPlace() throws Exception {
+		HttpFetcher.MaxRetries = 0;
+		failingAppid = 6;
+		newDownloader(0, 0);
+		int[] appids = { 3, 6, 1, 8 };
+
+		List<String> events = new ArrayList<>();
+		new CrawlEngine(downloader, 4).crawl(appids, (appid, triples) -> events.add("ok " + appid),
+				(appid, e) -> events.add("failed " + appid + " " + ((HttpStatusException) e).getStatus()));
+
+		assertEquals("[ok 3, failed 6 503, ok 1, ok 8]", events.toString());
+	}
+
+	@Test
+	public void requestRateIsLimited() throws Exception {
+		double requestsPerSecond = 50;
+		newDownloader(requestsPerSecond, 0);
+		int[] appids = new int[20];
+		for (int i = 0; i < appids.length; i++)
+			appids[i] = i + 1;
+
+		long start = System.nanoTime();
+		downloader.DownloadGameData(appids);
+
+		List<StubServer.Request> requests = server.getRequests();
+		// 20 appdetails and 16 store pages, the dlcs have no page
+		assertEquals(36, requests.size());
+		requests.sort(Comparator.comparingLong(StubServer.Request::getReceivedNanos));
+		long interval = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+		for (int i = 0; i < requests.size(); i++) {
+			// the first i + 1 requests took i + 1 different slots, the last of them started i intervals after the first slot
+			long earliest = start + i * interval;
+			assertTrue("Request " + i + " started too early", requests.get(i).getReceivedNanos() >= earliest);
+		}
+	}
+
+	@Test
+	public void connectionsPerHostAreLimited() throws Exception {
+		newDownloader(0, 2);
+		int[] appids = new int[Games];
+		for (int i = 0; i < appids.length; i++)
+			appids[i] = i + 1;
+
+		downloader.DownloadGameData(appids);
+
+		assertEquals(Games + Games / 5 * 4, server.getRequests().size());
+		assertTrue("Max concurrent requests " + server.getMaxConcurrent(), server.getMaxConcurrent() <= 2);
+		assertEquals(2, server.getMaxConcurrent());
+	}
+}
@@ -0,0 +1,247 @@
+package webFetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the retries, timeouts, compression and caching of HttpFetcher against a local StubServer.
+ */
+public class HttpFetcherTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private StubServer server;
+	private HttpFetcher fetcher;
+	private int maxRetries;
+	private long initialBackoff;
+	private long maxBackoff;
+	private int readTimeout;
+	private int maxDrain;
+
+	@Before
+	public void setUp() throws IOException {
+		maxRetries = HttpFetcher.MaxRetries;
+		initialBackoff = HttpFetcher.InitialBackoffMillis;
+		maxBackoff = HttpFetcher.MaxBackoffMillis;
+		readTimeout = HttpFetcher.ReadTimeoutMillis;
+		maxDrain = HttpFetcher.MaxDrainBytes;
+		HttpFetcher.MaxRetries = 3;
+		HttpFetcher.InitialBackoffMillis = 10;
+		HttpFetcher.MaxBackoffMillis = 5000;
+		HttpFetcher.ReadTimeoutMillis = 500;
+		server = new StubServer();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (fetcher != null)
+			fetcher.close();
+		server.close();
+		HttpFetcher.MaxRetries = maxRetries;
+		HttpFetcher.InitialBackoffMillis = initialBackoff;
+		HttpFetcher.MaxBackoffMillis = maxBackoff;
+		HttpFetcher.ReadTimeoutMillis = readTimeout;
+		HttpFetcher.MaxDrainBytes = maxDrain;
+	}
+
+	private HttpFetcher newFetcher() {
+		fetcher = new HttpFetcher(new RequestThrottle(0, 0), 4);
+		return fetcher;
+	}
+
+	private String get(String path) throws IOException, InterruptedException {
+		return fetcher.fetch("test", server.url(path), HttpFetcherTest::readAll);
+	}
+
+	private static String readAll(InputStream is) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+		char[] buffer = new char[1024];
+		int read;
+		while ((read = reader.read(buffer)) >= 0)
+			sb.append(buffer, 0, read);
+		return sb.toString();
+	}
+
+	@Test
+	public void retriesServerErrors() throws Exception {
+		server.on("/flaky", (exchange, call) -> {
+			if (call < 2)
+				StubServer.respond(exchange, call == 0 ? 503 : 500, "busy");
+			else
+				StubServer.respond(exchange, 200, "ok");
+		});
+		newFetcher();
+
+		assertEquals("ok", get("/flaky"));
+		assertEquals(3, server.getRequests().size());
+	}
+
+	@Test
+	public void retriesTooManyRequestsAfterRetryAfter() throws Exception {
+		server.on("/limited", (exchange, call) -> {
+			if (call == 0)
+				StubServer.respond(exchange, 429, "slow down", "Retry-After", "1");
+			else
+				StubServer.respond(exchange, 200, "ok");
+		});
+		newFetcher();
+
+		assertEquals("ok", get("/limited"));
+		List<StubServer.Request> requests = server.getRequests();
+		assertEquals(2, requests.size());
+		long waited = TimeUnit.NANOSECONDS.toMillis(requests.get(1).getReceivedNanos() - requests.get(0).getReceivedNanos());
+		assertTrue("Retry-After of 1 s ignored, retried after " + waited + " ms", waited >= 950);
+	}
+
+	@Test
+	public void backoffDoublesBetweenRetries() throws Exception {
+		HttpFetcher.InitialBackoffMillis = 100;
+		server.on("/down", (exchange, call) -> StubServer.respond(exchange, 502, "down"));
+		newFetcher();
+
+		try {
+			get("/down");
+			fail("Expected the request to fail");
+		} catch (HttpStatusException e) {
+			assertEquals(502, e.getStatus());
+		}
+		List<StubServer.Request> requests = server.getRequests();
+		assertEquals(HttpFetcher.MaxRetries + 1, requests.size());
+		// each wait is between half and all of 100, 200 and 400 ms
+		for (int i = 1; i < requests.size(); i++) {
+			long waited = TimeUnit.NANOSECONDS.toMillis(requests.get(i).getReceivedNanos()
+					- requests.get(i - 1).getReceivedNanos());
+			long backoff = 100 << (i - 1);
+			assertTrue("Retry " + i + " after " + waited + " ms", waited >= backoff / 2);
+		}
+	}
+
+	@Test
+	public void doesNotRetryClientErrors() throws Exception {
+		server.on("/missing", (exchange, call) -> StubServer.respond(exchange, 404, "not found"));
+		newFetcher();
+
+		try {
+			get("/missing");
+			fail("Expected the request to fail");
+		} catch (HttpStatusException e) {
+			assertEquals(404, e.getStatus());
+		}
+		assertEquals(1, server.getRequests().size());
+	}
+
+	@Test
+	public void decompressesGzip() throws Exception {
+		server.on("/zipped", (exchange, call) -> {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			try (GZIPOutputStream out = new GZIPOutputStream(body)) {
+				out.write("compressed body".getBytes(StandardCharsets.UTF_8));
+			}
+			StubServer.respond(exchange, 200, body.toByteArray(), "Content-Encoding", "gzip");
+		});
+		newFetcher();
+
+		assertEquals("compressed body", get("/zipped"));
+		String accepted = server.getRequests().get(0).getHeader("Accept-Encoding");
+		assertTrue("Accept-Encoding: " + accepted, accepted != null && accepted.contains("gzip"));
+	}
+
+	@Test
+	public void retriesReadTimeouts() throws Exception {
+		server.on("/slow", (exchange, call) -> {
+			if (call == 0)
+				Thread.sleep(HttpFetcher.ReadTimeoutMillis * 4L);
+			StubServer.respond(exchange, 200, "late");
+		});
+		newFetcher();
+
+		long start = System.nanoTime();
+		assertEquals("late", get("/slow"));
+		long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertEquals(2, server.getRequests().size());
+		assertTrue("Read timeout not applied, took " + took + " ms", took < HttpFetcher.ReadTimeoutMillis * 4L);
+	}
+
+	@Test
+	public void revalidatesCachedResponses() throws Exception {
+		server.on("/cached", (exchange, call) -> {
+			String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+			if ("\"v1\"".equals(etag))
+				StubServer.respond(exchange, 304, new byte[0], "ETag", "\"v1\"");
+			else
+				StubServer.respond(exchange, 200, "first", "ETag", "\"v1\"",
+						"Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+		});
+		ResponseCache cache = new ResponseCache(folder.newFolder("cache"), 0, 0, false);
+		newFetcher().setCache(cache);
+
+		assertEquals("first", get("/cached"));
+		assertEquals("first", get("/cached"));
+		List<StubServer.Request> requests = server.getRequests();
+		assertEquals(2, requests.size());
+		assertNull(requests.get(0).getHeader("If-None-Match"));
+		assertEquals("\"v1\"", requests.get(1).getHeader("If-None-Match"));
+		assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", requests.get(1).getHeader("If-Modified-Since"));
+		assertTrue(cache.toString(), cache.toString().contains("1 revalidated"));
+	}
+
+	@Test
+	public void usesFreshCacheWithoutRequest() throws Exception {
+		server.on("/fresh", (exchange, call) -> StubServer.respond(exchange, 200, "body " + call));
+		ResponseCache cache = new ResponseCache(folder.newFolder("cache"), 0, TimeUnit.HOURS.toMillis(1), false);
+		newFetcher().setCache(cache);
+
+		assertEquals("body 0", get("/fresh"));
+		assertEquals("body 0", get("/fresh"));
+		assertEquals(1, server.getRequests().size());
+	}
+
+	@Test
+	public void cacheWriteFailureKeepsTheResponse() throws Exception {
+		server.on("/uncacheable", (exchange, call) -> StubServer.respond(exchange, 200, "ok"));
+		File dir = folder.newFolder("cache");
+		ResponseCache cache = new ResponseCache(dir, 0, 0, false);
+		assertTrue(dir.delete());
+		newFetcher().setCache(cache);
+
+		assertEquals("ok", get("/uncacheable"));
+		assertEquals(1, server.getRequests().size());
+	}
+
+	@Test
+	public void partialReadsKeepTheConnection() throws Exception {
+		StringBuilder page = new StringBuilder();
+		for (int i = 0; i < 5000; i++)
+			page.append("line ").append(i).append('\n');
+		server.on("/page", (exchange, call) -> StubServer.respond(exchange, 200, page.toString()));
+		newFetcher();
+
+		for (int i = 0; i < 5; i++)
+			assertEquals('l', (int) fetcher.fetch("test", server.url("/page"), InputStream::read));
+		List<StubServer.Request> requests = server.getRequests();
+		assertEquals(5, requests.size());
+		for (StubServer.Request request : requests)
+			assertEquals(requests.get(0).getRemotePort(), request.getRemotePort());
+	}
+}
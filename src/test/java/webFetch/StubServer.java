@@ -0,0 +1,179 @@
+package webFetch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local http server for tests, answering with scripted responses instead of Steam.
+ * Every request is recorded with its headers, the client port and the time it arrived,
+ * and the number of requests being answered at the same time is tracked.
+ */
+public class StubServer implements AutoCloseable {
+
+	/**
+	 * Answers one request to a path.
+	 */
+	public interface Handler {
+		/**
+		 * @param exchange The request, must be answered, e.g. with StubServer.respond.
+		 * @param call The number of earlier requests to the same path, 0 for the first one.
+		 */
+		void handle(HttpExchange exchange, int call) throws Exception;
+	}
+
+	/**
+	 * A request received by the server.
+	 */
+	public static final class Request {
+		private final String uri;
+		private final Headers headers;
+		private final int remotePort;
+		private final long receivedNanos;
+
+		Request(HttpExchange exchange) {
+			this.uri = exchange.getRequestURI().toString();
+			this.headers = exchange.getRequestHeaders();
+			this.remotePort = exchange.getRemoteAddress().getPort();
+			this.receivedNanos = System.nanoTime();
+		}
+
+		/**
+		 * @return The path and query of the request.
+		 */
+		public String getUri() {
+			return uri;
+		}
+
+		/**
+		 * @return The value of a request header, null if it was not sent.
+		 */
+		public String getHeader(String name) {
+			return headers.getFirst(name);
+		}
+
+		/**
+		 * @return The port of the client, the same for every request sent on a kept alive connection.
+		 */
+		public int getRemotePort() {
+			return remotePort;
+		}
+
+		/**
+		 * @return The System.nanoTime the request arrived at.
+		 */
+		public long getReceivedNanos() {
+			return receivedNanos;
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final List<Request> requests = new CopyOnWriteArrayList<>();
+	private final ConcurrentMap<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+
+	/**
+	 * Starts a server on a free port of the loopback address.
+	 */
+	public StubServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Answers the requests to every path starting with the given prefix, the longest registered prefix wins.
+	 * 
+	 * @param prefix The start of the path, e.g. "/app/".
+	 * @param handler Answers the requests.
+	 * @return This server.
+	 */
+	public StubServer on(String prefix, Handler handler) {
+		AtomicInteger counter = calls.computeIfAbsent(prefix, p -> new AtomicInteger());
+		server.createContext(prefix, exchange -> {
+			requests.add(new Request(exchange));
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			try (InputStream body = exchange.getRequestBody()) {
+				while (body.read() >= 0)
+					;
+				handler.handle(exchange, counter.getAndIncrement());
+			} catch (IOException e) {
+				// the client gave up, e.g. after a read timeout
+			} catch (Exception e) {
+				throw new IOException(e);
+			} finally {
+				active.decrementAndGet();
+				exchange.close();
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * @param path The path and query, e.g. "/api/appdetails?appids=".
+	 * @return The full url of the path on this server.
+	 */
+	public String url(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	/**
+	 * @return The requests received so far, in the order they arrived.
+	 */
+	public List<Request> getRequests() {
+		return new ArrayList<>(requests);
+	}
+
+	/**
+	 * @return The highest number of requests that were being answered at the same time.
+	 */
+	public int getMaxConcurrent() {
+		return maxActive.get();
+	}
+
+	/**
+	 * Sends a complete response with a utf-8 body.
+	 * 
+	 * @param headers Header names and values, alternating.
+	 */
+	public static void respond(HttpExchange exchange, int status, String body, String... headers) throws IOException {
+		respond(exchange, status, body.getBytes(StandardCharsets.UTF_8), headers);
+	}
+
+	/**
+	 * Sends a complete response. Statuses without a body, e.g. 304, must pass an empty body.
+	 * 
+	 * @param headers Header names and values, alternating.
+	 */
+	public static void respond(HttpExchange exchange, int status, byte[] body, String... headers) throws IOException {
+		for (int i = 0; i + 1 < headers.length; i += 2)
+			exchange.getResponseHeaders().add(headers[i], headers[i + 1]);
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}